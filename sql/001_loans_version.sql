@@ -0,0 +1,3 @@
+-- Optimistic concurrency for repayments: every balance change bumps Version,
+-- and writers only update the row if it still has the version they read.
+ALTER TABLE loans ADD COLUMN Version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,28 @@
+-- One row per guarantor of a loan, replacing the comma-joined loans.GuarantorIDs
+-- string for lookups. GuarantorIDs is still written for existing reports.
+CREATE TABLE loan_guarantors (
+    LoanID INT NOT NULL,
+    GuarantorID INT NOT NULL,
+    PRIMARY KEY (LoanID, GuarantorID),
+    INDEX idx_loan_guarantors_guarantor (GuarantorID)
+);
+
+-- Backfill from the legacy GuarantorIDs column (MySQL 8 recursive CTE); entries
+-- that are not plain member numbers are skipped.
+INSERT IGNORE INTO loan_guarantors (LoanID, GuarantorID)
+WITH RECURSIVE split (LoanID, item, rest) AS (
+    SELECT LoanID,
+           SUBSTRING_INDEX(GuarantorIDs, ',', 1),
+           IF(LOCATE(',', GuarantorIDs) > 0, SUBSTRING(GuarantorIDs, LOCATE(',', GuarantorIDs) + 1), '')
+    FROM loans
+    WHERE GuarantorIDs IS NOT NULL AND GuarantorIDs <> ''
+    UNION ALL
+    SELECT LoanID,
+           SUBSTRING_INDEX(rest, ',', 1),
+           IF(LOCATE(',', rest) > 0, SUBSTRING(rest, LOCATE(',', rest) + 1), '')
+    FROM split
+    WHERE rest <> ''
+)
+SELECT LoanID, CAST(TRIM(item) AS UNSIGNED)
+FROM split
+WHERE TRIM(item) REGEXP '^[0-9]+$';
@@ -0,0 +1,10 @@
+-- Fixed deposit interest per member per month, written by InterestAccrualEngine.
+-- Period is the first day of the month; re-running a month overwrites its rows.
+CREATE TABLE member_interest_accruals (
+    MemberID INT NOT NULL,
+    Period DATE NOT NULL,
+    Balance DOUBLE NOT NULL,
+    Interest DOUBLE NOT NULL,
+    PRIMARY KEY (MemberID, Period),
+    INDEX idx_member_interest_accruals_period (Period)
+);
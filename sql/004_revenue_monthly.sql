@@ -0,0 +1,26 @@
+-- Revenue per calendar month, kept up to date by RevenueLedger as loans are issued,
+-- repayments posted, members registered and the fixed deposit updated. Period is
+-- the first day of the month.
+CREATE TABLE revenue_monthly (
+    Period DATE NOT NULL PRIMARY KEY,
+    LoanInterest DOUBLE NOT NULL DEFAULT 0,
+    DepositInterest DOUBLE NOT NULL DEFAULT 0,
+    RegistrationFees DOUBLE NOT NULL DEFAULT 0,
+    Repayments DOUBLE NOT NULL DEFAULT 0
+);
+
+-- Backfill. Fixed deposit rows carry a date and go to their own month. Loans and
+-- members have no date, so their interest and fees to date are booked as an
+-- opening figure in the current month. Past repayments are not recorded anywhere
+-- and start from zero.
+INSERT INTO revenue_monthly (Period, DepositInterest)
+SELECT DATE_FORMAT(LastUpdated, '%Y-%m-01'), SUM(MonthlyInterest)
+FROM fixed_deposits
+WHERE LastUpdated IS NOT NULL
+GROUP BY DATE_FORMAT(LastUpdated, '%Y-%m-01');
+
+INSERT INTO revenue_monthly (Period, LoanInterest, RegistrationFees)
+SELECT DATE_FORMAT(CURDATE(), '%Y-%m-01'),
+       (SELECT COALESCE(SUM(LoanAmount * InterestRate / 100), 0) FROM loans),
+       (SELECT COALESCE(SUM(RegistrationFee), 0) FROM members)
+ON DUPLICATE KEY UPDATE LoanInterest = VALUES(LoanInterest), RegistrationFees = VALUES(RegistrationFees);
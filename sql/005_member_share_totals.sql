@@ -0,0 +1,26 @@
+-- Running contribution total per member, kept up to date by ContributionPosting in
+-- the same transaction as each contribution insert, so loan eligibility never has to
+-- aggregate the contributions table.
+CREATE TABLE member_share_totals (
+    MemberID INT NOT NULL PRIMARY KEY,
+    TotalContributions DOUBLE NOT NULL DEFAULT 0,
+    ContributionCount INT NOT NULL DEFAULT 0,
+    LastContributionDate DATE
+);
+
+-- Backfill from the contributions already loaded. The stock contributions table has
+-- no ContributionDate, so LastContributionDate starts empty.
+INSERT INTO member_share_totals (MemberID, TotalContributions, ContributionCount, LastContributionDate)
+SELECT MemberID, SUM(ContributionAmount), COUNT(*), NULL
+FROM contributions
+GROUP BY MemberID;
+
+-- Only where contributions has a ContributionDate column:
+-- UPDATE member_share_totals t
+-- JOIN (SELECT MemberID, MAX(ContributionDate) AS LastDate FROM contributions GROUP BY MemberID) c
+--     ON c.MemberID = t.MemberID
+-- SET t.LastContributionDate = c.LastDate;
+
+-- Contributions loaded outside the app later are picked up by
+-- ContributionPosting --rebuild-totals, which also fills LastContributionDate when
+-- the column exists.
@@ -0,0 +1,16 @@
+-- One row per loan installment, written by LoanSchedule when a loan is issued and
+-- paid down as repayments are posted. Overdue installments are the unsettled rows
+-- with DueDate in the past, found through idx_loan_schedule_overdue.
+CREATE TABLE loan_schedule (
+    LoanID INT NOT NULL,
+    InstallmentNo INT NOT NULL,
+    DueDate DATE NOT NULL,
+    AmountDue DOUBLE NOT NULL,
+    AmountPaid DOUBLE NOT NULL DEFAULT 0,
+    Settled BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (LoanID, InstallmentNo),
+    INDEX idx_loan_schedule_overdue (Settled, DueDate)
+);
+
+-- Existing loans have no issue date; run LoanSchedule once afterwards to give each
+-- active loan a schedule for its outstanding balance starting next month.
@@ -0,0 +1,6 @@
+-- Spread each month of revenue_monthly over several rows (Slot 0-15, chosen at random
+-- by RevenueLedger for each event) so concurrent repayments, loan issues and
+-- registrations do not all queue on one row lock. Readers sum a month's slots.
+-- Existing rows become slot 0.
+ALTER TABLE revenue_monthly ADD COLUMN Slot TINYINT NOT NULL DEFAULT 0 AFTER Period;
+ALTER TABLE revenue_monthly DROP PRIMARY KEY, ADD PRIMARY KEY (Period, Slot);
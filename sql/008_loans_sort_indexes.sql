@@ -0,0 +1,6 @@
+-- Let the loans screen page through loans sorted by status or type with keyset
+-- queries (key, LoanID) instead of sorting the whole table for every page. InnoDB
+-- secondary indexes already end in the primary key, so these cover (key, LoanID);
+-- sorting by member uses the existing MemberID index.
+CREATE INDEX idx_loans_status ON loans (LoanStatus);
+CREATE INDEX idx_loans_type ON loans (LoanType);
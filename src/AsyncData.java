@@ -0,0 +1,244 @@
+import javax.swing.*;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Application-wide executor for database work. Screens hand it a unit of JDBC
+// work keyed by what the user asked for; the work runs on a bounded pool of
+// worker threads and its result is delivered back on the Swing event thread.
+public final class AsyncData {
+    private static final int WORKERS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_DATA_WORKERS", "4"));
+    private static final int QUEUE_CAPACITY = 100;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        AtomicInteger counter = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(WORKERS, WORKERS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+            Thread t = new Thread(r, "data-worker-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    // Tasks in flight for work started without a busy indicator. Screens with an
+    // indicator keep their own registry so two open windows never cancel each other.
+    // Only touched on the event thread.
+    private static final Map<String, Task> UNSCOPED = new HashMap<>();
+
+    private AsyncData() {
+    }
+
+    // Work executed off the event thread
+    public interface Work<T> {
+        T run(Task task) throws Exception;
+    }
+
+    // Start the work, cancelling any request with the same key that is still running.
+    // Use for reads, where only the latest click matters.
+    public static <T> Task run(String key, BusyIndicator busy, Work<T> work,
+                                  Consumer<T> onSuccess, Consumer<Exception> onError) {
+        checkEventThread();
+        Task previous = registry(busy).get(key);
+        if (previous != null) {
+            previous.cancel();
+        }
+        return start(key, busy, work, onSuccess, onError);
+    }
+
+    // Start the work unless a request with the same key is already running, in which
+    // case the click is merged into that request. Use for writes, which must not repeat.
+    // Cancel only stops a write that has not finished: whatever the work returns or
+    // throws is still delivered, so a write that committed before the cancel is
+    // reported rather than silently dropped (and then submitted again).
+    public static <T> Task runOnce(String key, BusyIndicator busy, Work<T> work,
+                                      Consumer<T> onSuccess, Consumer<Exception> onError) {
+        checkEventThread();
+        Task previous = registry(busy).get(key);
+        if (previous != null) {
+            return previous;
+        }
+        return start(key, busy, true, work, onSuccess, onError);
+    }
+
+    // Start a read unless one with the same key is already running, in which case the
+    // request is merged into it. Use for reads asked for repeatedly while they load
+    // (table pages); cancelling drops the result as for run.
+    public static <T> Task runIfIdle(String key, BusyIndicator busy, Work<T> work,
+                                        Consumer<T> onSuccess, Consumer<Exception> onError) {
+        checkEventThread();
+        Task previous = registry(busy).get(key);
+        if (previous != null) {
+            return previous;
+        }
+        return start(key, busy, false, work, onSuccess, onError);
+    }
+
+    private static <T> Task start(String key, BusyIndicator busy, Work<T> work,
+                                     Consumer<T> onSuccess, Consumer<Exception> onError) {
+        return start(key, busy, false, work, onSuccess, onError);
+    }
+
+    private static <T> Task start(String key, BusyIndicator busy, boolean write, Work<T> work,
+                                     Consumer<T> onSuccess, Consumer<Exception> onError) {
+        Task task = new Task(key, busy, write);
+        registry(busy).put(key, task);
+        if (busy != null) {
+            busy.attach(task);
+        }
+        try {
+            task.future = EXECUTOR.submit(() -> execute(task, work, onSuccess, onError));
+        } catch (RejectedExecutionException e) {
+            finish(task);
+            onError.accept(new SQLException("Too many database requests are queued. Please try again.", e));
+        }
+        return task;
+    }
+
+    private static <T> void execute(Task task, Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        T result = null;
+        Exception failure = null;
+        try {
+            task.checkCancelled();
+            result = work.run(task);
+        } catch (Exception e) {
+            failure = e;
+        }
+        T finalResult = result;
+        Exception finalFailure = failure;
+        SwingUtilities.invokeLater(() -> {
+            finish(task);
+            // A cancelled read is dropped; a cancelled write only when it never ran
+            if (task.isCancelled() && (!task.write || finalFailure instanceof CancellationException)) {
+                return;
+            }
+            if (finalFailure != null) {
+                onError.accept(finalFailure);
+            } else {
+                onSuccess.accept(finalResult);
+            }
+        });
+    }
+
+    private static void finish(Task task) {
+        Map<String, Task> running = registry(task.busy);
+        if (running.get(task.key) == task) {
+            running.remove(task.key);
+        }
+        if (task.busy != null) {
+            task.busy.detach(task);
+        }
+    }
+
+    private static Map<String, Task> registry(BusyIndicator busy) {
+        return busy != null ? busy.running : UNSCOPED;
+    }
+
+    private static void checkEventThread() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            throw new IllegalStateException("AsyncData requests must be started on the Swing event thread.");
+        }
+    }
+
+    // Handle to a unit of in-flight work: cancellation, progress, and statements to abort
+    public static final class Task implements JobControl {
+        private final String key;
+        private final BusyIndicator busy;
+        private final boolean write;
+        // Statements still open; closed ones are dropped as new ones are tracked
+        private final List<Statement> statements = new ArrayList<>();
+        private volatile boolean cancelled = false;
+        private volatile Future<?> future;
+
+        private Task(String key, BusyIndicator busy, boolean write) {
+            this.key = key;
+            this.busy = busy;
+            this.write = write;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // Throw if the user has cancelled; call between rows or batches
+        @Override
+        public void checkCancelled() {
+            if (cancelled) {
+                throw new CancellationException("Request '" + key + "' was cancelled.");
+            }
+        }
+
+        // Register a running statement so cancelling the task also aborts the query
+        @Override
+        public <S extends Statement> S track(S statement) {
+            synchronized (statements) {
+                statements.removeIf(Task::isClosed);
+                statements.add(statement);
+            }
+            if (cancelled) {
+                cancelStatement(statement);
+            }
+            return statement;
+        }
+
+        // Report progress; total <= 0 means the amount of work is unknown
+        @Override
+        public void progress(long done, long total, String message) {
+            if (busy != null) {
+                SwingUtilities.invokeLater(() -> busy.showProgress(this, done, total, message));
+            }
+        }
+
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            List<Statement> toCancel;
+            synchronized (statements) {
+                toCancel = new ArrayList<>(statements);
+            }
+            for (Statement statement : toCancel) {
+                cancelStatement(statement);
+            }
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            if (SwingUtilities.isEventDispatchThread()) {
+                finish(this);
+            } else {
+                SwingUtilities.invokeLater(() -> finish(this));
+            }
+        }
+
+        private static boolean isClosed(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+
+        private static void cancelStatement(Statement statement) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // The statement may already have completed or been closed
+            }
+        }
+    }
+}
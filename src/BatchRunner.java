@@ -0,0 +1,268 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Headless entry point for schedulers: runs reports, exports and the month-end jobs
+// from a job spec, using the same code as the screens. Never touches AWT or Swing.
+//
+// Usage: BatchRunner <spec-file | ->
+//        BatchRunner --job "<job line>" [--job "<job line>" ...]
+//
+// A spec has one job per line; blank lines and lines starting with # are ignored,
+// and arguments containing spaces go in double quotes:
+//
+//   report "<report name>"                       stream the report as CSV to stdout
+//   export "<report name>" <file> [gzip]         stream the report to a CSV file
+//   pack <directory> [gzip]                      every report, in parallel (ReportPack)
+//   fixed-deposit-update                         add a fixed_deposits row (as the Update button)
+//   accrue-interest [from-month [through-month]] per-member interest; default catches up to now
+//   rebuild-share-totals                         recompute member_share_totals from contributions
+//   dividends <year> <surplus> [shares|share-months] [preview <file>]
+//
+// The whole spec is checked before anything runs. Jobs run in order and the run
+// stops at the first failure. Exit status: 0 success, 1 a job failed, 2 bad spec.
+public class BatchRunner {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    interface Job {
+        // Returns a one-line result for the log
+        String run() throws Exception;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        List<String> lines = new ArrayList<>();
+        List<Job> jobs = new ArrayList<>();
+        try {
+            readSpec(args, lines);
+            for (int i = 0; i < lines.size(); i++) {
+                jobs.add(parse(tokenize(lines.get(i))));
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Invalid job spec: " + e.getMessage());
+            System.err.println("Usage: BatchRunner <spec-file | -> | --job \"<job line>\" ...");
+            System.exit(2);
+        }
+        if (jobs.isEmpty()) {
+            System.err.println("No jobs to run.");
+            System.exit(2);
+        }
+
+        for (int i = 0; i < jobs.size(); i++) {
+            long start = System.nanoTime();
+            log("start " + lines.get(i));
+            try {
+                String result = jobs.get(i).run();
+                log(String.format(Locale.ROOT, "done  %s (%.2f s)%s", lines.get(i), (System.nanoTime() - start) / 1e9,
+                        result == null ? "" : ": " + result));
+            } catch (Exception e) {
+                log("FAILED " + lines.get(i) + ": " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void readSpec(String[] args, List<String> lines) throws IOException {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("no spec file or --job given");
+        }
+        List<String> raw = new ArrayList<>();
+        if (args[0].equals("--job")) {
+            for (int i = 0; i < args.length; i += 2) {
+                if (!args[i].equals("--job") || i + 1 >= args.length) {
+                    throw new IllegalArgumentException("expected --job \"<job line>\" pairs");
+                }
+                raw.add(args[i + 1]);
+            }
+        } else if (args[0].equals("-")) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                raw.add(line);
+            }
+        } else {
+            raw.addAll(Files.readAllLines(new File(args[0]).toPath(), StandardCharsets.UTF_8));
+        }
+        for (String line : raw) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                lines.add(trimmed);
+            }
+        }
+    }
+
+    // Splits on whitespace, keeping double-quoted arguments together
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(current.toString());
+                    current.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                current.append(c);
+                inToken = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unclosed quote in: " + line);
+        }
+        if (inToken) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static Job parse(List<String> tokens) {
+        String command = tokens.get(0);
+        int argc = tokens.size() - 1;
+        switch (command) {
+            case "report": {
+                expect(command, argc, 1, 1);
+                ReportCatalog.Report report = report(tokens.get(1));
+                return () -> {
+                    // Streamed from a forward-only cursor; stdout stays open for later jobs
+                    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+                    return CsvExporter.export(report.query, report.columns, out, JobControl.NONE) + " rows";
+                };
+            }
+            case "export": {
+                expect(command, argc, 2, 3);
+                ReportCatalog.Report report = report(tokens.get(1));
+                boolean gzip = flag(tokens, 3, "gzip");
+                File target = CsvExporter.targetFile(new File(tokens.get(2)), gzip);
+                return () -> CsvExporter.export(report.query, report.columns, target, gzip, JobControl.NONE)
+                        + " rows to " + target;
+            }
+            case "pack": {
+                expect(command, argc, 1, 2);
+                File directory = new File(tokens.get(1));
+                boolean gzip = flag(tokens, 2, "gzip");
+                return () -> {
+                    if (!directory.isDirectory() && !directory.mkdirs()) {
+                        throw new IOException("Could not create " + directory);
+                    }
+                    ReportPack.Result result = ReportPack.generate(directory, gzip, JobControl.NONE);
+                    System.out.println(result.summary());
+                    if (result.failures() > 0) {
+                        throw new IllegalStateException(result.failures() + " report(s) failed");
+                    }
+                    return result.reports.size() + " reports in " + directory;
+                };
+            }
+            case "fixed-deposit-update":
+                expect(command, argc, 0, 0);
+                return FixedDepositService::update;
+            case "accrue-interest": {
+                expect(command, argc, 0, 2);
+                if (argc == 0) {
+                    return () -> InterestAccrualEngine.accrueDue(JobControl.NONE).toString();
+                }
+                YearMonth from = month(tokens.get(1));
+                YearMonth through = argc > 1 ? month(tokens.get(2)) : from;
+                if (through.isBefore(from)) {
+                    throw new IllegalArgumentException("accrue-interest: " + through + " is before " + from);
+                }
+                return () -> InterestAccrualEngine.accrue(from, through, JobControl.NONE).toString();
+            }
+            case "rebuild-share-totals":
+                expect(command, argc, 0, 0);
+                return () -> ContributionPosting.rebuildTotals(JobControl.NONE) + " members";
+            case "dividends": {
+                expect(command, argc, 2, 5);
+                int year;
+                double surplus;
+                try {
+                    year = Integer.parseInt(tokens.get(1));
+                    surplus = Double.parseDouble(tokens.get(2));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("dividends needs a year and a surplus amount");
+                }
+                DividendRun.Weighting weighting = DividendRun.Weighting.SHARE_MONTHS;
+                int next = 3;
+                if (argc >= next && !tokens.get(next).equals("preview")) {
+                    if (tokens.get(next).equals("shares")) {
+                        weighting = DividendRun.Weighting.SHARES;
+                    } else if (!tokens.get(next).equals("share-months")) {
+                        throw new IllegalArgumentException("unknown dividend weighting: " + tokens.get(next));
+                    }
+                    next++;
+                }
+                File preview = null;
+                if (argc >= next) {
+                    if (!tokens.get(next).equals("preview") || argc != next + 1) {
+                        throw new IllegalArgumentException("expected: preview <file>");
+                    }
+                    preview = new File(tokens.get(next + 1));
+                }
+                DividendRun.Weighting chosen = weighting;
+                File previewFile = preview;
+                return () -> DividendRun.run(year, surplus, chosen, previewFile != null, previewFile, JobControl.NONE).toString();
+            }
+            default:
+                throw new IllegalArgumentException("unknown job: " + command);
+        }
+    }
+
+    private static void expect(String command, int argc, int min, int max) {
+        if (argc < min || argc > max) {
+            throw new IllegalArgumentException(command + " takes " + (min == max ? String.valueOf(min) : min + " to " + max)
+                    + " argument(s), got " + argc);
+        }
+    }
+
+    private static ReportCatalog.Report report(String name) {
+        ReportCatalog.Report report = ReportCatalog.find(name);
+        if (report == null) {
+            throw new IllegalArgumentException("unknown report \"" + name + "\"; expected one of "
+                    + String.join(", ", ReportCatalog.names()));
+        }
+        return report;
+    }
+
+    private static boolean flag(List<String> tokens, int index, String name) {
+        if (tokens.size() <= index) {
+            return false;
+        }
+        if (!tokens.get(index).equals(name)) {
+            throw new IllegalArgumentException("unexpected argument: " + tokens.get(index));
+        }
+        return true;
+    }
+
+    private static YearMonth month(String value) {
+        try {
+            return YearMonth.parse(value);
+        } catch (java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("expected a month as yyyy-MM, got " + value);
+        }
+    }
+
+    private static void log(String message) {
+        System.err.println(LocalDateTime.now().format(TIME) + " " + message);
+    }
+}
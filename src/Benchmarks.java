@@ -0,0 +1,157 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Micro-benchmarks for the hot paths: loan rule evaluation, portfolio analytics,
+// report row materialization and CSV export. Each benchmark is warmed up, then measured over
+// several fixed-length iterations; the mean and spread of ops/s are printed. For
+// the database benchmarks one op is one row read or written.
+//
+// The database benchmarks run only when FEDHA_DB_URL is set, so they can be pointed
+// at a local embedded database (for example H2 in MySQL mode on the classpath)
+// loaded with synthetic data, and reproduced on any machine.
+//
+// Usage: Benchmarks [name-filter]
+public class Benchmarks {
+    private static final int WARMUP_ITERATIONS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_BENCH_WARMUP", "3"));
+    private static final int MEASURE_ITERATIONS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_BENCH_ITERATIONS", "5"));
+    private static final long ITERATION_MILLIS = Long.parseLong(System.getenv().getOrDefault("FEDHA_BENCH_ITERATION_MS", "1000"));
+
+    // Results are folded into this so the JIT cannot drop the measured work
+    private static volatile double sink;
+
+    interface Operation {
+        // Returns the number of operations performed by one call
+        long run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        List<String> names = new ArrayList<>();
+        List<Operation> operations = new ArrayList<>();
+
+        double[] shares = new double[4096];
+        Random random = new Random(42);
+        for (int i = 0; i < shares.length; i++) {
+            shares[i] = 1000 + random.nextInt(40000);
+        }
+
+        names.add("members.loanEligibility");
+        operations.add(() -> {
+            double total = 0;
+            for (double s : shares) {
+                total += MembersSection.maxLoanAmount(s) + MembersSection.eligibleLoanType(s).length();
+            }
+            sink += total;
+            return shares.length;
+        });
+
+        names.add("loans.ruleLookup");
+        operations.add(() -> {
+            double total = 0;
+            for (int i = 0; i < shares.length; i++) {
+                String type = LoanRules.TYPES[i % LoanRules.TYPES.length];
+                total += LoanManagement.maxLoanAmount(shares[i], type)
+                        + LoanManagement.interestRateFactor(type)
+                        + LoanManagement.repaymentPeriod(type);
+            }
+            sink += total;
+            return shares.length;
+        });
+
+        // A million active loans with up to three guarantors each, as loaded from the database
+        PortfolioAnalytics.Portfolio portfolio = new PortfolioAnalytics.Portfolio();
+        for (int i = 0; i < 1_000_000; i++) {
+            portfolio.addLoan(i + 1, LoanRules.TYPES[i % LoanRules.TYPES.length], 1000 + random.nextInt(200_000),
+                    random.nextInt(4) == 0 ? random.nextInt(365) : 0);
+        }
+        for (int i = 0; i < 1_000_000; i++) {
+            for (int g = random.nextInt(4); g > 0; g--) {
+                portfolio.addGuarantor(i + 1, 1 + random.nextInt(100_000));
+            }
+        }
+
+        names.add("portfolio.analyze");
+        operations.add(() -> {
+            sink += PortfolioAnalytics.analyze(portfolio).par(30);
+            return portfolio.size;
+        });
+
+        if (System.getenv("FEDHA_DB_URL") != null) {
+            File exportDir = Files.createTempDirectory("fedha-bench").toFile();
+            for (ReportCatalog.Report report : new ReportCatalog.Report[]{ReportCatalog.MEMBERS, ReportCatalog.LOANS}) {
+                String key = report == ReportCatalog.MEMBERS ? "members" : "loans";
+
+                names.add("reports.rows." + key);
+                operations.add(() -> ReportCatalog.fetchRows(JobControl.NONE, report.query, report.columns.length).size());
+
+                names.add("export.csv." + key);
+                operations.add(() -> exportOnce(report, new File(exportDir, key + ".csv"), false));
+
+                names.add("export.csv.gz." + key);
+                operations.add(() -> exportOnce(report, new File(exportDir, key + ".csv.gz"), true));
+            }
+        } else {
+            System.out.println("FEDHA_DB_URL is not set; skipping database benchmarks.");
+        }
+
+        System.out.printf(Locale.ROOT, "%-28s %16s %14s  (%d x %d ms)%n", "Benchmark", "ops/s", "+/-",
+                MEASURE_ITERATIONS, ITERATION_MILLIS);
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).contains(filter)) {
+                measure(names.get(i), operations.get(i));
+            }
+        }
+        if (System.getenv("FEDHA_DB_URL") != null) {
+            System.out.println("Pool: " + DatabaseConnection.getPoolStats());
+        }
+    }
+
+    // Rows written per export; each call exports the whole report
+    private static long exportOnce(ReportCatalog.Report report, File target, boolean gzip) throws Exception {
+        long rows = CsvExporter.export(report.query, report.columns, target, gzip, JobControl.NONE);
+        if (!target.delete()) {
+            throw new IOException("Could not delete " + target);
+        }
+        return rows;
+    }
+
+    private static void measure(String name, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(operation);
+        }
+        double[] rates = new double[MEASURE_ITERATIONS];
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            rates[i] = runIteration(operation);
+        }
+
+        double mean = 0;
+        for (double rate : rates) {
+            mean += rate;
+        }
+        mean /= rates.length;
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean);
+        }
+        double stdDev = rates.length > 1 ? Math.sqrt(variance / (rates.length - 1)) : 0;
+        System.out.printf(Locale.ROOT, "%-28s %16.1f %14.1f%n", name, mean, stdDev);
+    }
+
+    // Ops per second over one iteration
+    private static double runIteration(Operation operation) throws Exception {
+        long deadline = System.nanoTime() + ITERATION_MILLIS * 1_000_000;
+        long start = System.nanoTime();
+        long ops = 0;
+        long now;
+        do {
+            ops += operation.run();
+            now = System.nanoTime();
+        } while (now < deadline);
+        return ops * 1e9 / (now - start);
+    }
+}
@@ -0,0 +1,82 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Small status strip shown while a screen has database work in flight.
+// Screens add it to their layout once and pass it to AsyncData.
+public class BusyIndicator extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JLabel messageLabel = new JLabel();
+    private final JButton cancelButton = new JButton("Cancel");
+    private final Set<AsyncData.Task> tasks = new LinkedHashSet<>();
+    // Requests started through this indicator, by AsyncData key
+    final Map<String, AsyncData.Task> running = new HashMap<>();
+
+    public BusyIndicator() {
+        super(new FlowLayout(FlowLayout.LEFT, 10, 5));
+
+        progressBar.setIndeterminate(true);
+        progressBar.setPreferredSize(new Dimension(150, 16));
+        cancelButton.setToolTipText("Cancel the running request.");
+        cancelButton.addActionListener(e -> {
+            for (AsyncData.Task task : tasks.toArray(new AsyncData.Task[0])) {
+                task.cancel();
+            }
+        });
+
+        add(progressBar);
+        add(messageLabel);
+        add(cancelButton);
+        setVisible(false);
+    }
+
+    void attach(AsyncData.Task task) {
+        tasks.add(task);
+        progressBar.setIndeterminate(true);
+        progressBar.setStringPainted(false);
+        messageLabel.setText("Working...");
+        setVisible(true);
+        updateCursor();
+    }
+
+    void detach(AsyncData.Task task) {
+        tasks.remove(task);
+        if (tasks.isEmpty()) {
+            setVisible(false);
+        }
+        updateCursor();
+    }
+
+    void showProgress(AsyncData.Task task, long done, long total, String message) {
+        if (!tasks.contains(task)) {
+            return;
+        }
+        if (total > 0) {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(100);
+            progressBar.setValue((int) Math.min(100, done * 100 / total));
+            progressBar.setStringPainted(true);
+        } else {
+            progressBar.setIndeterminate(true);
+            progressBar.setStringPainted(false);
+        }
+        if (message != null) {
+            messageLabel.setText(message);
+        }
+    }
+
+    public boolean isBusy() {
+        return !tasks.isEmpty();
+    }
+
+    private void updateCursor() {
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window != null) {
+            window.setCursor(tasks.isEmpty() ? Cursor.getDefaultCursor() : Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        }
+    }
+}
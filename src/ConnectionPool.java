@@ -0,0 +1,390 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded JDBC connection pool. Callers get a proxy Connection whose close()
+// hands the physical connection back to the pool instead of closing it, so the
+// existing try-with-resources blocks keep working unchanged.
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private int totalConnections = 0;
+    private int waiters = 0;
+    private boolean shutdown = false;
+
+    // Statistics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowNanosTotal = new AtomicLong();
+    private final AtomicLong borrowNanosMax = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long maxWaitMillis, long idleTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = 2;
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Borrow a connection, waiting up to maxWaitMillis when the pool is exhausted
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection pooled = acquire(start);
+        long waited = System.nanoTime() - start;
+        recordBorrow(waited);
+        String caller = null;
+        if (QueryStats.ENABLED) {
+            caller = QueryStats.currentCaller();
+            QueryStats.recordConnectionWait(caller, waited);
+        }
+        return pooled.newHandle(caller);
+    }
+
+    private PooledConnection acquire(long start) throws SQLException {
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        while (true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (shutdown) {
+                        throw new SQLException("Connection pool has been shut down.");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (totalConnections < maxSize) {
+                        totalConnections++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLTransientConnectionException("Timed out after " + maxWaitMillis
+                                + " ms waiting for a database connection (pool size " + maxSize + ").");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    Connection physical = DriverManager.getConnection(url, user, password);
+                    connectionsCreated.incrementAndGet();
+                    return new PooledConnection(physical);
+                } catch (SQLException e) {
+                    discardSlot();
+                    throw e;
+                }
+            }
+
+            // Validate connections that have been sitting idle before handing them out
+            if (candidate.isValid(validationTimeoutSeconds)) {
+                return candidate;
+            }
+            candidate.closePhysical();
+            discardSlot();
+        }
+    }
+
+    private void recordBorrow(long nanos) {
+        borrowCount.incrementAndGet();
+        borrowNanosTotal.addAndGet(nanos);
+        long max;
+        while (nanos > (max = borrowNanosMax.get()) && !borrowNanosMax.compareAndSet(max, nanos)) {
+            // retry
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        boolean reusable = pooled.reset();
+        lock.lock();
+        try {
+            if (reusable && !shutdown) {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pooled);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        pooled.closePhysical();
+        discardSlot();
+    }
+
+    private void discardSlot() {
+        lock.lock();
+        try {
+            totalConnections--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Close connections that have been idle longer than the idle timeout
+    private void evictIdle() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (pooled.lastUsed < cutoff) {
+                    it.remove();
+                    totalConnections--;
+                    expired.add(pooled);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : expired) {
+            pooled.closePhysical();
+            connectionsEvicted.incrementAndGet();
+        }
+    }
+
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            shutdown = true;
+            toClose = new ArrayList<>(idle);
+            totalConnections -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : toClose) {
+            pooled.closePhysical();
+        }
+        evictor.shutdownNow();
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            long count = borrowCount.get();
+            return new Stats(totalConnections - idle.size(), idle.size(), waiters, maxSize, count,
+                    count == 0 ? 0 : borrowNanosTotal.get() / count, borrowNanosMax.get(),
+                    timeouts.get(), connectionsCreated.get(), connectionsEvicted.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Snapshot of pool activity
+    public static class Stats {
+        public final int active;
+        public final int idle;
+        public final int waiters;
+        public final int maxSize;
+        public final long borrows;
+        public final long averageBorrowNanos;
+        public final long maxBorrowNanos;
+        public final long timeouts;
+        public final long created;
+        public final long evicted;
+
+        Stats(int active, int idle, int waiters, int maxSize, long borrows, long averageBorrowNanos,
+              long maxBorrowNanos, long timeouts, long created, long evicted) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.maxSize = maxSize;
+            this.borrows = borrows;
+            this.averageBorrowNanos = averageBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.evicted = evicted;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d idle=%d waiters=%d max=%d borrows=%d avgBorrow=%.3fms maxBorrow=%.3fms timeouts=%d created=%d evicted=%d",
+                    active, idle, waiters, maxSize, borrows, averageBorrowNanos / 1_000_000.0,
+                    maxBorrowNanos / 1_000_000.0, timeouts, created, evicted);
+        }
+    }
+
+    // A physical connection owned by the pool
+    private class PooledConnection {
+        final Connection physical;
+        // Statements the current borrower has not closed yet. Synchronized because a
+        // statement may be closed from another thread after its connection was released.
+        final Set<Statement> openStatements = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<>()));
+        long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        // caller is null when query statistics are off
+        Connection newHandle(String caller) {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this, caller));
+        }
+
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        // Restore default session state so the next borrower starts clean
+        boolean reset() {
+            try {
+                List<Statement> leftOpen;
+                synchronized (openStatements) {
+                    leftOpen = new ArrayList<>(openStatements);
+                    openStatements.clear();
+                }
+                for (Statement stmt : leftOpen) {
+                    try {
+                        stmt.close();
+                    } catch (SQLException ignored) {
+                        // already closed or broken; the connection check below decides reuse
+                    }
+                }
+                if (physical.isClosed()) {
+                    return false;
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (physical.isReadOnly()) {
+                    physical.setReadOnly(false);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to close pooled connection: " + e.getMessage());
+            }
+        }
+    }
+
+    // Per-borrow view of a pooled connection; becomes unusable once closed
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final String caller;
+        private boolean closed = false;
+
+        Handle(PooledConnection pooled, String caller) {
+            this.pooled = pooled;
+            this.caller = caller;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool.");
+            }
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    // Always wrapped, so getConnection() on the statement returns this handle
+                    Statement stmt = (Statement) result;
+                    pooled.openStatements.add(stmt);
+                    String sql = caller != null && name.startsWith("prepare") ? (String) args[0] : null;
+                    return InstrumentedStatement.wrap(stmt, (Connection) proxy, caller, sql,
+                            () -> pooled.openStatements.remove(stmt));
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
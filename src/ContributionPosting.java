@@ -0,0 +1,333 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Records member contributions, one at a time from the members screen or in bulk from
+// a file ("MemberID,Amount[,Date]" per line, header optional, date as yyyy-MM-dd and
+// today when left out). Contributions are written in chunks, each in one transaction:
+// one JDBC batch of contribution inserts and one batch of member_share_totals upserts
+// (one per member in the chunk, in MemberID order so concurrent postings lock rows in
+// the same order). ShareTotalsCache is updated after each commit. Lines for unknown
+// members or with bad amounts go to <file>.rejected.csv. If the import stops part way
+// the committed chunks stay posted, and the result and reject file give the last line
+// processed so only the lines after it need posting again.
+//
+// Contributions loaded into the contributions table any other way never reach
+// member_share_totals; run the rebuild afterwards (it recomputes every total from
+// contributions in one transaction).
+//
+// Usage: ContributionPosting --rebuild-totals
+public class ContributionPosting {
+    private static final int CONTRIBUTIONS_PER_TRANSACTION = 1000;
+    // Header names accepted for the member ID, amount and date columns
+    private static final String[][] HEADER_NAMES = {{"memberid", "member"}, {"amount", "contributionamount"},
+            {"date", "contributiondate"}};
+
+    private static final class Contribution {
+        final int lineNumber;
+        final int memberId;
+        final double amount;
+        final LocalDate date;
+        final String raw;
+
+        Contribution(int lineNumber, int memberId, double amount, LocalDate date, String raw) {
+            this.lineNumber = lineNumber;
+            this.memberId = memberId;
+            this.amount = amount;
+            this.date = date;
+            this.raw = raw;
+        }
+    }
+
+    // What one chunk adds to a member's running total
+    private static final class MemberDelta {
+        double amount;
+        int count;
+        LocalDate lastDate;
+    }
+
+    public static final class Result {
+        public int linesRead;
+        public int contributionsPosted;
+        public int membersUpdated;
+        public double amountPosted;
+        public long elapsedMillis;
+        // Each reject is {line number, reason, original line}
+        public final List<String[]> rejects = new ArrayList<>();
+        public File rejectFile;
+        // Set when the import stopped part way; every line up to processedThroughLine
+        // was posted or rejected and nothing after it was posted
+        public Exception failure;
+        public int processedThroughLine;
+
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            if (failure != null) {
+                sb.append("Import stopped: ").append(CsvImport.describe(failure)).append("\n");
+                sb.append("Lines up to ").append(processedThroughLine).append(" were processed; nothing after line ")
+                        .append(processedThroughLine).append(" was posted.\n");
+            }
+            sb.append("Lines read: ").append(linesRead).append("\n");
+            sb.append("Contributions posted: ").append(contributionsPosted).append(" (Ksh ")
+                    .append(String.format("%.2f", amountPosted)).append(")\n");
+            sb.append("Member totals updated: ").append(membersUpdated).append("\n");
+            sb.append("Rejected lines: ").append(rejects.size()).append("\n");
+            if (rejectFile != null) {
+                sb.append("Rejects written to: ").append(rejectFile.getAbsolutePath()).append("\n");
+            }
+            sb.append("Time: ").append(elapsedMillis).append(" ms");
+            return sb.toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !args[0].equals("--rebuild-totals")) {
+            System.err.println("Usage: ContributionPosting --rebuild-totals");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        int members = rebuildTotals(JobControl.NONE);
+        System.out.printf("Rebuilt contribution totals for %d members in %.1f s%n", members, (System.nanoTime() - start) / 1e9);
+        System.exit(0);
+    }
+
+    // Replaces member_share_totals with totals recomputed from contributions; returns
+    // the number of members with contributions
+    public static int rebuildTotals(JobControl job) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            boolean dated = DatabaseConnection.hasColumn(conn, "contributions", "ContributionDate");
+            String rebuild = "INSERT INTO member_share_totals (MemberID, TotalContributions, ContributionCount, LastContributionDate) " +
+                    "SELECT MemberID, SUM(ContributionAmount), COUNT(*), " + (dated ? "MAX(ContributionDate)" : "NULL") +
+                    " FROM contributions GROUP BY MemberID";
+            int members;
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmtDelete = job.track(conn.prepareStatement("DELETE FROM member_share_totals"));
+                 PreparedStatement pstmtRebuild = job.track(conn.prepareStatement(rebuild))) {
+                pstmtDelete.executeUpdate();
+                job.checkCancelled();
+                members = pstmtRebuild.executeUpdate();
+                job.checkCancelled();
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            TableVersions.bump(TableVersions.MEMBER_SHARE_TOTALS);
+            ShareTotalsCache.invalidateAll();
+            return members;
+        }
+    }
+
+    // Single entry from the members screen; returns the member's new total
+    public static double post(int memberId, double amount, LocalDate date) throws SQLException {
+        if (!Double.isFinite(amount) || amount <= 0) {
+            throw new IllegalArgumentException("Contribution amount must be positive.");
+        }
+        Result result = new Result();
+        List<Contribution> single = new ArrayList<>();
+        single.add(new Contribution(0, memberId, amount, date, ""));
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            postChunk(conn, single, result);
+        }
+        if (result.contributionsPosted == 0) {
+            throw new IllegalArgumentException("Member ID " + memberId + " not found.");
+        }
+        return ShareTotalsCache.getTotal(memberId);
+    }
+
+    public Result importFile(File file, JobControl job) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        LocalDate today = LocalDate.now();
+        int[] columns = {0, 1, 2};
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+             Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            List<Contribution> chunk = new ArrayList<>(CONTRIBUTIONS_PER_TRANSACTION);
+            String raw;
+            int lineNumber = 0;
+            while ((raw = reader.readLine()) != null) {
+                lineNumber++;
+                if (raw.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = CsvImport.split(raw);
+
+                if (lineNumber == 1 && CsvImport.readHeader(fields, columns, HEADER_NAMES)) {
+                    continue;
+                }
+                int memberColumn = columns[0];
+                int amountColumn = columns[1];
+                int dateColumn = columns[2];
+
+                result.linesRead++;
+                if (fields.length <= Math.max(memberColumn, amountColumn)) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Missing member ID or amount"));
+                    continue;
+                }
+                int memberId;
+                double amount;
+                try {
+                    memberId = Integer.parseInt(fields[memberColumn].trim());
+                    amount = Double.parseDouble(fields[amountColumn].trim());
+                } catch (NumberFormatException e) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Member ID and amount must be numeric"));
+                    continue;
+                }
+                if (!Double.isFinite(amount) || amount <= 0) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Amount must be a positive number"));
+                    continue;
+                }
+                LocalDate date = today;
+                if (fields.length > dateColumn && !fields[dateColumn].trim().isEmpty()) {
+                    try {
+                        date = LocalDate.parse(fields[dateColumn].trim());
+                    } catch (DateTimeParseException e) {
+                        result.rejects.add(CsvImport.reject(lineNumber, raw, "Date must be yyyy-MM-dd"));
+                        continue;
+                    }
+                }
+
+                chunk.add(new Contribution(lineNumber, memberId, amount, date, raw));
+                if (chunk.size() == CONTRIBUTIONS_PER_TRANSACTION) {
+                    job.checkCancelled();
+                    postChunk(conn, chunk, result);
+                    chunk.clear();
+                    result.processedThroughLine = lineNumber;
+                    job.progress(result.linesRead, 0, "Posted " + result.contributionsPosted + " contributions");
+                }
+            }
+            if (!chunk.isEmpty()) {
+                job.checkCancelled();
+                postChunk(conn, chunk, result);
+            }
+            result.processedThroughLine = lineNumber;
+        } catch (SQLException | IOException | RuntimeException e) {
+            result.failure = e;
+        }
+
+        if (!result.rejects.isEmpty() || result.failure != null) {
+            result.rejectFile = CsvImport.writeRejects(file, result.rejects, result.failure == null ? null
+                    : CsvImport.stopMarker(result.failure, "nothing after line " + result.processedThroughLine + " was posted"));
+        }
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    // One transaction: check the members exist, insert the contributions and add
+    // them to member_share_totals
+    private static void postChunk(Connection conn, List<Contribution> chunk, Result result) throws SQLException {
+        boolean dated = DatabaseConnection.hasColumn(conn, "contributions", "ContributionDate");
+        String insert = dated
+                ? "INSERT INTO contributions (MemberID, ContributionAmount, ContributionDate) VALUES (?, ?, ?)"
+                : "INSERT INTO contributions (MemberID, ContributionAmount) VALUES (?, ?)";
+        String upsert = "INSERT INTO member_share_totals (MemberID, TotalContributions, ContributionCount, LastContributionDate) " +
+                "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE " +
+                "TotalContributions = TotalContributions + VALUES(TotalContributions), " +
+                "ContributionCount = ContributionCount + VALUES(ContributionCount), " +
+                "LastContributionDate = GREATEST(COALESCE(LastContributionDate, VALUES(LastContributionDate)), VALUES(LastContributionDate))";
+
+        conn.setAutoCommit(false);
+        Map<Integer, MemberDelta> deltas = new TreeMap<>();
+        try (PreparedStatement pstmtInsert = conn.prepareStatement(insert);
+             PreparedStatement pstmtUpsert = conn.prepareStatement(upsert)) {
+            Set<Integer> known = existingMembers(conn, chunk);
+            for (Contribution contribution : chunk) {
+                if (!known.contains(contribution.memberId)) {
+                    result.rejects.add(CsvImport.reject(contribution.lineNumber, contribution.raw, "Member ID not found"));
+                    continue;
+                }
+                pstmtInsert.setInt(1, contribution.memberId);
+                pstmtInsert.setDouble(2, contribution.amount);
+                if (dated) {
+                    pstmtInsert.setDate(3, Date.valueOf(contribution.date));
+                }
+                pstmtInsert.addBatch();
+
+                MemberDelta delta = deltas.computeIfAbsent(contribution.memberId, id -> new MemberDelta());
+                delta.amount += contribution.amount;
+                delta.count++;
+                if (delta.lastDate == null || contribution.date.isAfter(delta.lastDate)) {
+                    delta.lastDate = contribution.date;
+                }
+            }
+            if (deltas.isEmpty()) {
+                conn.commit();
+                return;
+            }
+            pstmtInsert.executeBatch();
+
+            for (Map.Entry<Integer, MemberDelta> entry : deltas.entrySet()) {
+                pstmtUpsert.setInt(1, entry.getKey());
+                pstmtUpsert.setDouble(2, entry.getValue().amount);
+                pstmtUpsert.setInt(3, entry.getValue().count);
+                pstmtUpsert.setDate(4, Date.valueOf(entry.getValue().lastDate));
+                pstmtUpsert.addBatch();
+            }
+            pstmtUpsert.executeBatch();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        TableVersions.bump(TableVersions.CONTRIBUTIONS, TableVersions.MEMBER_SHARE_TOTALS);
+        for (Map.Entry<Integer, MemberDelta> entry : deltas.entrySet()) {
+            ShareTotalsCache.recordContribution(entry.getKey(), entry.getValue().amount);
+            result.contributionsPosted += entry.getValue().count;
+            result.amountPosted += entry.getValue().amount;
+        }
+        result.membersUpdated += deltas.size();
+    }
+
+    private static Set<Integer> existingMembers(Connection conn, List<Contribution> chunk) throws SQLException {
+        Set<Integer> wanted = new HashSet<>();
+        for (Contribution contribution : chunk) {
+            wanted.add(contribution.memberId);
+        }
+        StringBuilder select = new StringBuilder("SELECT MemberID FROM members WHERE MemberID IN (");
+        for (int i = 0; i < wanted.size(); i++) {
+            select.append(i == 0 ? "?" : ", ?");
+        }
+        select.append(")");
+
+        Set<Integer> found = new HashSet<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(select.toString())) {
+            int index = 1;
+            for (int memberId : wanted) {
+                pstmt.setInt(index++, memberId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getInt(1));
+                }
+            }
+        }
+        return found;
+    }
+}
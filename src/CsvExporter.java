@@ -0,0 +1,184 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a query result straight to a CSV file. Rows are read through a
+// forward-only cursor with a streaming fetch size and written through a buffered
+// writer, so the size of an export is not limited by memory. The file is written
+// under a temporary name and only moved into place once the export completes.
+public final class CsvExporter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 5000;
+
+    private CsvExporter() {
+    }
+
+    // Export using a pooled connection; returns the number of data rows written
+    public static long export(String query, String[] headers, File target, boolean gzip, JobControl job)
+            throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            return export(conn, query, headers, target, gzip, job);
+        }
+    }
+
+    public static long export(Connection conn, String query, String[] headers, File target, boolean gzip, JobControl job)
+            throws SQLException, IOException {
+        File temp = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part");
+        long rows = 0;
+        boolean completed = false;
+
+        try {
+            try (Writer writer = openWriter(temp, gzip)) {
+                rows = export(conn, query, headers, writer, job);
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        return rows;
+    }
+
+    // Streams the query to a writer the caller owns (for example stdout), using a pooled
+    // connection; the writer is flushed but not closed
+    public static long export(String query, String[] headers, Writer writer, JobControl job)
+            throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            long rows = export(conn, query, headers, writer, job);
+            writer.flush();
+            return rows;
+        }
+    }
+
+    private static long export(Connection conn, String query, String[] headers, Writer writer, JobControl job)
+            throws SQLException, IOException {
+        long rows = 0;
+        try (PreparedStatement pstmt = job.track(conn.prepareStatement(query,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            pstmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                writeRow(writer, headers);
+
+                int columnCount = rs.getMetaData().getColumnCount();
+                String[] values = new String[columnCount];
+                while (rs.next()) {
+                    for (int i = 0; i < columnCount; i++) {
+                        Object value = rs.getObject(i + 1);
+                        values[i] = value == null ? "" : value.toString();
+                    }
+                    writeRow(writer, values);
+                    rows++;
+                    if (rows % PROGRESS_INTERVAL == 0) {
+                        job.checkCancelled();
+                        job.progress(rows, 0, rows + " rows written");
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Writes rows already in memory (computed reports), with the same temporary-file handling
+    public static long writeRows(File target, boolean gzip, String[] headers, List<Object[]> rows) throws IOException {
+        File temp = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part");
+        boolean completed = false;
+        try {
+            try (Writer writer = openWriter(temp, gzip)) {
+                writeRow(writer, headers);
+                String[] values = new String[headers.length];
+                for (Object[] row : rows) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = row[i] == null ? "" : row[i].toString();
+                    }
+                    writeRow(writer, values);
+                }
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+        return rows.size();
+    }
+
+    // The file name the exporter should write to for a base name chosen by the user
+    public static File targetFile(File chosen, boolean gzip) {
+        String name = chosen.getName();
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (!lower.endsWith(".csv") && !lower.endsWith(".csv.gz")) {
+            name = name + ".csv";
+        }
+        if (gzip && !name.toLowerCase(Locale.ROOT).endsWith(".gz")) {
+            name = name + ".gz";
+        }
+        return new File(chosen.getAbsoluteFile().getParentFile(), name);
+    }
+
+    private static Writer openWriter(File file, boolean gzip) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    static void writeRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(writer, values[i]);
+        }
+        writer.write('\n');
+    }
+
+    // RFC 4180 quoting: fields containing a comma, quote or line break are quoted
+    static void writeField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -0,0 +1,103 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Shared pieces of the CSV importers (RepaymentImporter, MemberImporter,
+// ContributionPosting): splitting a line into fields, the optional header row,
+// rejected lines and the <file>.rejected.csv written next to the input. Rejects are
+// {line number, reason, original line}.
+final class CsvImport {
+    private static final String[] REJECT_HEADER = {"Line", "Reason", "Original"};
+
+    private CsvImport() {
+    }
+
+    // Splits one line as spreadsheets write CSV: a field may be quoted to hold commas,
+    // and "" inside quotes is a literal quote
+    static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // Reads a header row into columns when it is one: a field matching any of names[k]
+    // (case and spaces ignored) becomes the index of column k, and unmatched columns
+    // keep their default. Returns false, leaving columns alone, when no field matches,
+    // so a first data line is never mistaken for a header.
+    static boolean readHeader(String[] fields, int[] columns, String[][] names) {
+        int[] found = columns.clone();
+        boolean matched = false;
+        for (int i = 0; i < fields.length; i++) {
+            String name = fields[i].trim().toLowerCase(Locale.ROOT).replace(" ", "");
+            for (int k = 0; k < names.length; k++) {
+                for (String candidate : names[k]) {
+                    if (name.equals(candidate)) {
+                        found[k] = i;
+                        matched = true;
+                    }
+                }
+            }
+        }
+        if (matched) {
+            System.arraycopy(found, 0, columns, 0, columns.length);
+        }
+        return matched;
+    }
+
+    static String[] reject(int lineNumber, String raw, String reason) {
+        return new String[]{String.valueOf(lineNumber), reason, raw};
+    }
+
+    // Last reject row of an import that stopped part way: what stopped it and which
+    // lines still need posting, so re-running does not post anything twice
+    static String[] stopMarker(Exception failure, String remaining) {
+        return new String[]{"", "Import stopped (" + describe(failure) + "); " + remaining, ""};
+    }
+
+    static String describe(Exception failure) {
+        return failure.getMessage() != null ? failure.getMessage() : failure.toString();
+    }
+
+    // Writes the rejects, then stopMarker when not null, to <input>.rejected.csv beside
+    // the input and returns that file
+    static File writeRejects(File input, List<String[]> rejects, String[] stopMarker) throws IOException {
+        File file = new File(input.getAbsoluteFile().getParentFile(), input.getName() + ".rejected.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            CsvExporter.writeRow(writer, REJECT_HEADER);
+            for (String[] reject : rejects) {
+                CsvExporter.writeRow(writer, reject);
+            }
+            if (stopMarker != null) {
+                CsvExporter.writeRow(writer, stopMarker);
+            }
+        }
+        return file;
+    }
+}
@@ -1,42 +1,90 @@
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Locale;
 
 public class DatabaseConnection {
     // Database connection details are loaded from environment variables when possible.
     // Fallbacks keep local development simple but avoid hardcoding real passwords here.
-    private static final String URL = System.getenv().getOrDefault("FEDHA_DB_URL", "jdbc:mysql://localhost:3306/FedhaYouthGroup");
+    // rewriteBatchedStatements lets Connector/J send a JDBC batch as multi-row statements
+    // instead of one round trip per row.
+    private static final String URL = System.getenv().getOrDefault("FEDHA_DB_URL",
+            "jdbc:mysql://localhost:3306/FedhaYouthGroup?rewriteBatchedStatements=true");
     private static final String USER = System.getenv().getOrDefault("FEDHA_DB_USER", "root");
     private static final String PASSWORD = System.getenv("FEDHA_DB_PASSWORD");
-    private static Connection connection = null;
 
-    // Static block to initialize the connection
+    // Pool sizing; the defaults suit a handful of clerks on one desktop client.
+    private static final int POOL_SIZE = Integer.parseInt(System.getenv().getOrDefault("FEDHA_DB_POOL_SIZE", "10"));
+    private static final long POOL_MAX_WAIT_MS = Long.parseLong(System.getenv().getOrDefault("FEDHA_DB_POOL_MAX_WAIT_MS", "5000"));
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.parseLong(System.getenv().getOrDefault("FEDHA_DB_POOL_IDLE_TIMEOUT_MS", "300000"));
+
+    private static ConnectionPool pool = null;
+
+    // Static block to initialize the pool
     static {
-        try {
-            if (PASSWORD == null) {
-                System.err.println("FEDHA_DB_PASSWORD is not set. Unable to establish initial database connection.");
-            } else {
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-                System.out.println("Database connected successfully!");
+        if (PASSWORD == null) {
+            System.err.println("FEDHA_DB_PASSWORD is not set. Unable to establish initial database connection.");
+        } else {
+            pool = new ConnectionPool(URL, USER, PASSWORD, POOL_SIZE, POOL_MAX_WAIT_MS, POOL_IDLE_TIMEOUT_MS);
+            // Open the first connection eagerly so configuration problems surface at startup
+            try {
+                pool.borrow().close();
+                System.err.println("Database connected successfully!");
+            } catch (SQLException e) {
+                System.err.println("Database connection failed: " + e.getMessage());
             }
-        } catch (SQLException e) {
-            System.err.println("Database connection failed: " + e.getMessage());
         }
     }
 
-    // Get the singleton connection instance
+    // Borrow a pooled connection; closing it returns it to the pool
     public static Connection getConnection() {
+        if (pool == null) {
+            System.err.println("FEDHA_DB_PASSWORD is not set. Unable to establish database connection.");
+            return null;
+        }
         try {
-            if (PASSWORD == null) {
-                System.err.println("FEDHA_DB_PASSWORD is not set. Unable to establish database connection.");
-                return null;
-            }
-            if (connection == null || connection.isClosed()) {
-                connection = DriverManager.getConnection(URL, USER, PASSWORD);
-            }
+            return pool.borrow();
         } catch (SQLException e) {
             System.err.println("Failed to establish a database connection: " + e.getMessage());
         }
-        return connection;
+        return null;
+    }
+
+    // Fetch size for forward-only queries that should stream rather than buffer the
+    // whole result; MySQL only streams row by row when it is Integer.MIN_VALUE
+    public static int streamingFetchSize(Connection conn) throws SQLException {
+        return conn.getMetaData().getDriverName().startsWith("MySQL") ? Integer.MIN_VALUE : 1000;
+    }
+
+    // Current pool activity, or null when the database is not configured
+    public static ConnectionPool.Stats getPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+
+    // Whether a table exists; checks the name as given and upper-cased (H2 and other
+    // databases that fold unquoted names)
+    static boolean hasTable(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), null, name, null)) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String[] names : new String[][]{{table, column}, {table.toUpperCase(Locale.ROOT), column.toUpperCase(Locale.ROOT)}}) {
+            try (ResultSet rs = meta.getColumns(conn.getCatalog(), null, names[0], names[1])) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 }
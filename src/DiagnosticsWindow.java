@@ -0,0 +1,121 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.List;
+import java.util.Locale;
+
+// Live view of QueryStats: per-statement latency, slow and failed queries, pool
+// usage and connection waits. Refreshes every two seconds while open.
+public class DiagnosticsWindow {
+    private static final int REFRESH_MILLIS = 2000;
+
+    private final JFrame frame;
+    private final DefaultTableModel statementsModel;
+    private final DefaultTableModel slowModel;
+    private final DefaultTableModel waitsModel;
+    private final JLabel poolLabel = new JLabel();
+
+    public DiagnosticsWindow() {
+        frame = new JFrame("Diagnostics");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.setSize(1000, 700);
+        frame.setLayout(new BorderLayout());
+        frame.setLocationRelativeTo(null);
+
+        JLabel titleLabel = new JLabel("Query Diagnostics", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
+        titleLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
+
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        poolLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        headerPanel.add(poolLabel, BorderLayout.SOUTH);
+        frame.add(headerPanel, BorderLayout.NORTH);
+
+        statementsModel = readOnlyModel("Caller", "SQL", "Count", "Failures", "Avg (ms)", "p95 (ms)", "Max (ms)", "Rows");
+        slowModel = readOnlyModel("Time", "Caller", "SQL", "Duration (ms)", "Error");
+        waitsModel = readOnlyModel("Caller", "Borrows", "Avg Wait (ms)", "p95 Wait (ms)", "Max Wait (ms)");
+
+        JTable statementsTable = new JTable(statementsModel);
+        statementsTable.setAutoCreateRowSorter(true);
+        JTable slowTable = new JTable(slowModel);
+        JTable waitsTable = new JTable(waitsModel);
+        waitsTable.setAutoCreateRowSorter(true);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Statements", new JScrollPane(statementsTable));
+        tabs.addTab("Slow / Failed Queries", new JScrollPane(slowTable));
+        tabs.addTab("Connection Waits", new JScrollPane(waitsTable));
+        frame.add(tabs, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
+        JButton resetButton = new JButton("Reset");
+        JButton closeButton = new JButton("Close");
+        resetButton.setToolTipText("Clear all collected query statistics.");
+        buttonPanel.add(resetButton);
+        buttonPanel.add(closeButton);
+        frame.add(buttonPanel, BorderLayout.SOUTH);
+
+        Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+        resetButton.addActionListener(e -> {
+            QueryStats.reset();
+            refresh();
+        });
+        closeButton.addActionListener(e -> frame.dispose());
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        if (!QueryStats.ENABLED) {
+            poolLabel.setText("Query statistics are turned off (FEDHA_QUERY_STATS=false).");
+        } else {
+            refresh();
+            timer.start();
+        }
+        frame.setVisible(true);
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+
+    // Snapshots are cheap (a few hundred entries at most), so this runs on the event thread
+    private void refresh() {
+        ConnectionPool.Stats pool = DatabaseConnection.getPoolStats();
+        poolLabel.setText("<html>Pool: " + (pool == null ? "not started" : pool.toString())
+                + "<br>Report cache: " + ReportCache.getStats() + "</html>");
+
+        List<QueryStats.StatementStats> statements = QueryStats.getStatements();
+        // Most total time first
+        statements.sort((a, b) -> Double.compare(b.getAverageMillis() * b.getExecutions(), a.getAverageMillis() * a.getExecutions()));
+        statementsModel.setRowCount(0);
+        for (QueryStats.StatementStats s : statements) {
+            statementsModel.addRow(new Object[]{s.caller, s.sql, s.getExecutions(), s.getFailures(),
+                    round(s.getAverageMillis()), round(s.getPercentileMillis(95)), round(s.getMaxMillis()), s.getRows()});
+        }
+
+        slowModel.setRowCount(0);
+        for (QueryStats.SlowQuery q : QueryStats.getSlowQueries()) {
+            slowModel.addRow(new Object[]{String.format(Locale.ROOT, "%tT", q.timestampMillis), q.caller, q.sql,
+                    round(q.millis), q.error == null ? "" : q.error});
+        }
+
+        waitsModel.setRowCount(0);
+        for (QueryStats.ConnectionWait w : QueryStats.getConnectionWaits()) {
+            waitsModel.addRow(new Object[]{w.caller, w.getBorrows(), round(w.getAverageMillis()),
+                    round(w.getPercentileMillis(95)), round(w.getMaxMillis())});
+        }
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 100) / 100.0;
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Year-end dividends. The year's distributable surplus is shared out in proportion
+// to each member's weight: their shares, optionally scaled by the months of the
+// year they were a member (from their first contribution; members with no dated
+// contributions count as holding all year). Dividends are rounded down to the cent
+// and the remainder is reported as undistributed.
+//
+// Members are read in one streaming pass into primitive arrays, weights and
+// dividends are computed by parallel workers over partitions of those arrays, and
+// members.Dividends is written in JDBC batches inside a single transaction. A dry
+// run writes a preview CSV instead and leaves the database untouched.
+public class DividendRun {
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_DIVIDEND_THREADS",
+            String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+    private static final int BATCH_SIZE = 1000;
+    private static final int PARTITION_MIN = 10_000;
+    // Fraction of a cent treated as float noise when rounding dividends down
+    private static final double CENT_EPSILON = 1e-6;
+
+    public enum Weighting {
+        SHARES("Shares"),
+        SHARE_MONTHS("Shares x months held");
+
+        private final String label;
+
+        Weighting(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public static final class Result {
+        public final int year;
+        public final int members;
+        public final double distributed;
+        public final double undistributed;
+        public final boolean dryRun;
+        public final long millis;
+
+        Result(int year, int members, double distributed, double undistributed, boolean dryRun, long millis) {
+            this.year = year;
+            this.members = members;
+            this.distributed = distributed;
+            this.undistributed = undistributed;
+            this.dryRun = dryRun;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d dividends: %d members, Ksh %.2f distributed, Ksh %.2f undistributed (%.1f s)",
+                    dryRun ? "Previewed" : "Paid", year, members, distributed, undistributed, millis / 1000.0);
+        }
+    }
+
+    // One member per index
+    private static final class Members {
+        int size;
+        int[] ids = new int[1024];
+        String[] names = new String[1024];
+        double[] shares = new double[1024];
+        byte[] monthsHeld = new byte[1024];
+        double[] dividends;
+
+        void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            shares = Arrays.copyOf(shares, capacity);
+            monthsHeld = Arrays.copyOf(monthsHeld, capacity);
+        }
+    }
+
+    private interface PartitionWork {
+        double run(int lo, int hi) throws Exception;
+    }
+
+    // preview is required for a dry run and ignored otherwise
+    public static Result run(int year, double surplus, Weighting weighting, boolean dryRun, File preview, JobControl job)
+            throws SQLException, IOException {
+        if (surplus <= 0) {
+            throw new IllegalArgumentException("Distributable surplus must be greater than zero.");
+        }
+        long start = System.nanoTime();
+        job.progress(0, 0, "Loading members...");
+        Members members = load(year, job);
+        int n = members.size;
+        members.dividends = new double[n];
+
+        // Pass 1: weights, summed across partitions
+        double[] weights = new double[n];
+        double totalWeight = inPartitions(n, (lo, hi) -> {
+            double sum = 0;
+            for (int i = lo; i < hi; i++) {
+                double weight = weighting == Weighting.SHARES ? members.shares[i] : members.shares[i] * members.monthsHeld[i] / 12.0;
+                weights[i] = Math.max(0, weight);
+                sum += weights[i];
+            }
+            return sum;
+        });
+        if (totalWeight <= 0) {
+            throw new IllegalStateException("No member holds shares for " + year + "; nothing to distribute.");
+        }
+
+        // Pass 2: dividends rounded down to whole cents. The epsilon keeps float error in
+        // an exact-cent share (0.29 computed as 0.28999...) from losing a cent.
+        double perWeight = surplus / totalWeight;
+        double distributedCents = inPartitions(n, (lo, hi) -> {
+            double sum = 0;
+            for (int i = lo; i < hi; i++) {
+                long cents = (long) Math.floor(weights[i] * perWeight * 100 + CENT_EPSILON);
+                members.dividends[i] = cents / 100.0;
+                sum += cents;
+            }
+            return sum;
+        });
+        double distributed = distributedCents / 100.0;
+
+        job.checkCancelled();
+        if (dryRun) {
+            writePreview(members, weights, preview, job);
+        } else {
+            writeDividends(members, job);
+        }
+        return new Result(year, n, distributed, Math.round((surplus - distributed) * 100) / 100.0, dryRun,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static Members load(int year, JobControl job) throws SQLException {
+        Members members = new Members();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            boolean dated = DatabaseConnection.hasColumn(conn, "contributions", "ContributionDate");
+            String query = dated
+                    ? "SELECT m.MemberID, m.FullName, m.Shares, f.FirstContribution FROM members m " +
+                    "LEFT JOIN (SELECT MemberID, MIN(ContributionDate) AS FirstContribution FROM contributions GROUP BY MemberID) f " +
+                    "ON f.MemberID = m.MemberID"
+                    : "SELECT MemberID, FullName, Shares FROM members";
+            try (Statement stmt = job.track(conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+                stmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+                try (ResultSet rs = stmt.executeQuery(query)) {
+                    while (rs.next()) {
+                        if (members.size == members.ids.length) {
+                            job.checkCancelled();
+                            members.grow();
+                        }
+                        int i = members.size++;
+                        members.ids[i] = rs.getInt(1);
+                        members.names[i] = rs.getString(2);
+                        members.shares[i] = rs.getDouble(3);
+                        members.monthsHeld[i] = (byte) monthsHeld(dated ? rs.getDate(4) : null, year);
+                    }
+                }
+            }
+        }
+        return members;
+    }
+
+    // Months of the year held, counting the month of the first contribution
+    static int monthsHeld(Date firstContribution, int year) {
+        if (firstContribution == null) {
+            return 12;
+        }
+        LocalDate first = firstContribution.toLocalDate();
+        if (first.getYear() < year) {
+            return 12;
+        }
+        if (first.getYear() > year) {
+            return 0;
+        }
+        return 13 - first.getMonthValue();
+    }
+
+    // Run work over contiguous slices of [0, n) on worker threads; returns the sum of the slice results
+    private static double inPartitions(int n, PartitionWork work) {
+        int partitions = Math.max(1, Math.min(THREADS, n / PARTITION_MIN));
+        if (partitions == 1) {
+            try {
+                return work.run(0, n);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        int size = (n + partitions - 1) / partitions;
+        ExecutorService executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "dividend-run");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Double>> results = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int lo = p * size;
+                int hi = Math.min(n, lo + size);
+                results.add(executor.submit(() -> work.run(lo, hi)));
+            }
+            double total = 0;
+            for (Future<Double> result : results) {
+                total += result.get();
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing dividends.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Dividend computation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Every member's dividend in one transaction, so a failed run leaves last year's figures intact
+    private static void writeDividends(Members members, JobControl job) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = job.track(conn.prepareStatement("UPDATE members SET Dividends = ? WHERE MemberID = ?"))) {
+                for (int i = 0; i < members.size; i++) {
+                    stmt.setDouble(1, members.dividends[i]);
+                    stmt.setInt(2, members.ids[i]);
+                    stmt.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        job.checkCancelled();
+                        stmt.executeBatch();
+                        job.progress(i + 1, members.size, "Writing dividends...");
+                    }
+                }
+                stmt.executeBatch();
+                conn.commit();
+                TableVersions.bump(TableVersions.MEMBERS);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void writePreview(Members members, double[] weights, File preview, JobControl job) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(preview.toPath(), StandardCharsets.UTF_8)) {
+            CsvExporter.writeRow(writer, new String[]{"MemberID", "FullName", "Shares", "MonthsHeld", "Weight", "Dividend"});
+            for (int i = 0; i < members.size; i++) {
+                CsvExporter.writeRow(writer, new String[]{
+                        String.valueOf(members.ids[i]),
+                        members.names[i] == null ? "" : members.names[i],
+                        String.valueOf(members.shares[i]),
+                        String.valueOf(members.monthsHeld[i]),
+                        String.format(Locale.ROOT, "%.4f", weights[i]),
+                        String.format(Locale.ROOT, "%.2f", members.dividends[i])});
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    job.checkCancelled();
+                }
+            }
+        }
+    }
+}
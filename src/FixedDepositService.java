@@ -0,0 +1,78 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+// Fixed deposit calculations shared by FixedDepositManagement and BatchRunner.
+// No Swing here, so it can run headless.
+public final class FixedDepositService {
+    // Interest earned per month on savings held in the fixed deposit
+    static final double MONTHLY_RATE = 0.006;
+
+    private FixedDepositService() {
+    }
+
+    // Latest snapshot as {total savings, monthly interest, accumulated interest}
+    public static double[] loadLatest() throws SQLException {
+        String query = "SELECT TotalSavings, MonthlyInterest, AccumulatedInterest, LastUpdated FROM fixed_deposits ORDER BY DepositID DESC LIMIT 1";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+
+            if (rs.next()) {
+                return new double[]{rs.getDouble("TotalSavings"), rs.getDouble("MonthlyInterest"), rs.getDouble("AccumulatedInterest")};
+            }
+            return new double[]{0, 0, 0};
+        }
+    }
+
+    // Add a new fixed_deposits row from current savings, and its interest to
+    // revenue_monthly in the same transaction; returns a message for the user
+    public static String update() throws SQLException {
+        String selectQuery = "SELECT SUM(Shares) AS TotalSavings FROM members WHERE MemberID NOT IN (SELECT MemberID FROM loans WHERE LoanStatus = 'Active')";
+        String lastUpdateQuery = "SELECT MAX(LastUpdated) AS LastUpdated FROM fixed_deposits";
+        String insertQuery = "INSERT INTO fixed_deposits (TotalSavings, MonthlyInterest, AccumulatedInterest, LastUpdated) VALUES (?, ?, ?, ?)";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement selectStmt = conn.createStatement();
+             ResultSet rs = selectStmt.executeQuery(selectQuery);
+             PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
+
+            LocalDate lastUpdated = LocalDate.now().minusMonths(1); // Default to one month ago
+            try (Statement lastUpdateStmt = conn.createStatement();
+                 ResultSet lastUpdateRs = lastUpdateStmt.executeQuery(lastUpdateQuery)) {
+                if (lastUpdateRs.next() && lastUpdateRs.getDate("LastUpdated") != null) {
+                    lastUpdated = lastUpdateRs.getDate("LastUpdated").toLocalDate();
+                }
+            }
+
+            if (rs.next()) {
+                double totalSavings = rs.getDouble("TotalSavings");
+
+                if (totalSavings <= 0) {
+                    return "No savings available for fixed deposit.";
+                }
+
+                double monthlyInterest = totalSavings * MONTHLY_RATE;
+
+                long monthsSinceLastUpdate = ChronoUnit.MONTHS.between(lastUpdated, LocalDate.now());
+                double accumulatedInterest = monthlyInterest * monthsSinceLastUpdate;
+
+                insertStmt.setDouble(1, totalSavings);
+                insertStmt.setDouble(2, monthlyInterest);
+                insertStmt.setDouble(3, accumulatedInterest);
+                insertStmt.setDate(4, Date.valueOf(LocalDate.now()));
+
+                conn.setAutoCommit(false);
+                insertStmt.executeUpdate();
+                RevenueLedger.record(conn, LocalDate.now(), RevenueLedger.DEPOSIT_INTEREST, monthlyInterest);
+                conn.commit();
+                conn.setAutoCommit(true);
+                TableVersions.bump(TableVersions.FIXED_DEPOSITS, TableVersions.REVENUE_MONTHLY);
+                return "Fixed deposit updated successfully!";
+            } else {
+                return "No savings available for fixed deposit.";
+            }
+        }
+    }
+}
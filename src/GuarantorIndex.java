@@ -0,0 +1,263 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// In-memory inverted index from member to the active loans they guarantee and the
+// amount they are exposed to. A guarantor of an active loan is exposed to an equal
+// share of its outstanding balance, and may guarantee up to their own shares in
+// total. Loaded once from members and loan_guarantors, then kept current as loans
+// are created and repaid so the loan form can check guarantors without scanning.
+// The index is per workstation, so loan creation confirms the check in its own
+// transaction with lockAndValidate.
+public final class GuarantorIndex {
+    private static final long MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("FEDHA_GUARANTOR_INDEX_MAX_AGE_MINUTES", "10")));
+
+    private static GuarantorIndex instance;
+
+    private final Map<Integer, Guarantor> guarantors = new HashMap<>();
+    private final Map<Integer, GuaranteedLoan> loans = new HashMap<>();
+    private final long loadedAt = System.nanoTime();
+
+    private GuarantorIndex() {
+    }
+
+    private static final class Guarantor {
+        double shares;
+        double exposure;
+        final Set<Integer> loanIds = new LinkedHashSet<>();
+
+        Guarantor(double shares) {
+            this.shares = shares;
+        }
+    }
+
+    private static final class GuaranteedLoan {
+        double outstanding;
+        final int[] guarantorIds;
+
+        GuaranteedLoan(double outstanding, int[] guarantorIds) {
+            this.outstanding = outstanding;
+            this.guarantorIds = guarantorIds;
+        }
+
+        double sharePerGuarantor() {
+            return outstanding / guarantorIds.length;
+        }
+    }
+
+    // The shared index, loaded on first use and reloaded once it is older than the
+    // configured age so changes made from other workstations are picked up
+    public static synchronized GuarantorIndex get() throws SQLException {
+        if (instance == null || System.nanoTime() - instance.loadedAt > MAX_AGE_NANOS) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    // Apply changes to the loaded index only; nothing to do if it has not been loaded yet
+    private static synchronized GuarantorIndex loaded() {
+        return instance;
+    }
+
+    private static GuarantorIndex load() throws SQLException {
+        GuarantorIndex index = new GuarantorIndex();
+        String membersQuery = "SELECT MemberID, Shares FROM members";
+        String guaranteesQuery = "SELECT l.LoanID, l.OutstandingBalance, g.GuarantorID FROM loans l " +
+                "JOIN loan_guarantors g ON g.LoanID = l.LoanID WHERE l.LoanStatus = 'Active' ORDER BY l.LoanID";
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(membersQuery)) {
+                while (rs.next()) {
+                    index.guarantors.put(rs.getInt("MemberID"), new Guarantor(rs.getDouble("Shares")));
+                }
+            }
+
+            Map<Integer, Double> balances = new HashMap<>();
+            Map<Integer, Set<Integer>> guarantorsByLoan = new HashMap<>();
+            try (ResultSet rs = stmt.executeQuery(guaranteesQuery)) {
+                while (rs.next()) {
+                    int loanId = rs.getInt("LoanID");
+                    balances.put(loanId, rs.getDouble("OutstandingBalance"));
+                    guarantorsByLoan.computeIfAbsent(loanId, id -> new LinkedHashSet<>()).add(rs.getInt("GuarantorID"));
+                }
+            }
+            for (Map.Entry<Integer, Set<Integer>> entry : guarantorsByLoan.entrySet()) {
+                int[] ids = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                index.addLoan(entry.getKey(), balances.get(entry.getKey()), ids);
+            }
+        }
+        return index;
+    }
+
+    private synchronized void addLoan(int loanId, double outstanding, int[] guarantorIds) {
+        if (guarantorIds.length == 0 || outstanding <= 0) {
+            return;
+        }
+        GuaranteedLoan loan = new GuaranteedLoan(outstanding, guarantorIds);
+        loans.put(loanId, loan);
+        double share = loan.sharePerGuarantor();
+        for (int guarantorId : guarantorIds) {
+            Guarantor guarantor = guarantors.computeIfAbsent(guarantorId, id -> new Guarantor(0));
+            guarantor.exposure += share;
+            guarantor.loanIds.add(loanId);
+        }
+    }
+
+    private synchronized void updateBalance(int loanId, double newBalance) {
+        GuaranteedLoan loan = loans.get(loanId);
+        if (loan == null) {
+            return;
+        }
+        double delta = Math.max(newBalance, 0) / loan.guarantorIds.length - loan.sharePerGuarantor();
+        for (int guarantorId : loan.guarantorIds) {
+            Guarantor guarantor = guarantors.get(guarantorId);
+            guarantor.exposure = Math.max(guarantor.exposure + delta, 0);
+            if (newBalance <= 0) {
+                guarantor.loanIds.remove(loanId);
+            }
+        }
+        if (newBalance <= 0) {
+            loans.remove(loanId);
+        } else {
+            loan.outstanding = newBalance;
+        }
+    }
+
+    // Returns a message describing why the guarantors cannot back the loan, or null if they can
+    public synchronized String validate(int borrowerId, double loanAmount, int[] guarantorIds) {
+        if (guarantorIds.length == 0) {
+            return null;
+        }
+        double share = loanAmount / guarantorIds.length;
+        Set<Integer> seen = new LinkedHashSet<>();
+        for (int guarantorId : guarantorIds) {
+            if (!seen.add(guarantorId)) {
+                return "Guarantor " + guarantorId + " is listed more than once.";
+            }
+            if (guarantorId == borrowerId) {
+                return "A member cannot guarantee their own loan.";
+            }
+            Guarantor guarantor = guarantors.get(guarantorId);
+            if (guarantor == null || guarantor.shares <= 0) {
+                return "Guarantor " + guarantorId + " is not a member with shares.";
+            }
+            double available = guarantor.shares - guarantor.exposure;
+            if (share > available) {
+                return String.format("Guarantor %d can only guarantee Ksh %.2f more (already guaranteeing Ksh %.2f on %d loan(s)).",
+                        guarantorId, Math.max(available, 0), guarantor.exposure, guarantor.loanIds.size());
+            }
+        }
+        return null;
+    }
+
+    // Re-checks the guarantors against the database inside the caller's loan transaction.
+    // Their members rows are locked first (in MemberID order), so two clerks issuing
+    // loans with a common guarantor are serialized and cannot both use the same
+    // headroom; validate alone only sees this workstation's index. Returns a message,
+    // or null when the guarantors can still back the loan.
+    public static String lockAndValidate(Connection conn, double loanAmount, int[] guarantorIds) throws SQLException {
+        if (guarantorIds.length == 0) {
+            return null;
+        }
+        StringBuilder in = new StringBuilder();
+        for (int i = 0; i < guarantorIds.length; i++) {
+            in.append(i == 0 ? "?" : ", ?");
+        }
+        String lockQuery = "SELECT MemberID, Shares FROM members WHERE MemberID IN (" + in + ") ORDER BY MemberID FOR UPDATE";
+        String exposureQuery = "SELECT g.GuarantorID, l.OutstandingBalance, " +
+                "(SELECT COUNT(*) FROM loan_guarantors c WHERE c.LoanID = l.LoanID) AS Guarantors " +
+                "FROM loan_guarantors g JOIN loans l ON l.LoanID = g.LoanID " +
+                "WHERE g.GuarantorID IN (" + in + ") AND l.LoanStatus = 'Active'";
+
+        Map<Integer, Double> shares = new HashMap<>();
+        Map<Integer, Double> exposure = new HashMap<>();
+        try (PreparedStatement pstmtLock = conn.prepareStatement(lockQuery);
+             PreparedStatement pstmtExposure = conn.prepareStatement(exposureQuery)) {
+            for (int i = 0; i < guarantorIds.length; i++) {
+                pstmtLock.setInt(i + 1, guarantorIds[i]);
+                pstmtExposure.setInt(i + 1, guarantorIds[i]);
+            }
+            try (ResultSet rs = pstmtLock.executeQuery()) {
+                while (rs.next()) {
+                    shares.put(rs.getInt("MemberID"), rs.getDouble("Shares"));
+                }
+            }
+            try (ResultSet rs = pstmtExposure.executeQuery()) {
+                while (rs.next()) {
+                    double share = Math.max(rs.getDouble("OutstandingBalance"), 0) / Math.max(rs.getInt("Guarantors"), 1);
+                    exposure.merge(rs.getInt("GuarantorID"), share, Double::sum);
+                }
+            }
+        }
+
+        double share = loanAmount / guarantorIds.length;
+        for (int guarantorId : guarantorIds) {
+            Double guarantorShares = shares.get(guarantorId);
+            if (guarantorShares == null || guarantorShares <= 0) {
+                return "Guarantor " + guarantorId + " is not a member with shares.";
+            }
+            double current = exposure.getOrDefault(guarantorId, 0.0);
+            double available = guarantorShares - current;
+            if (share > available) {
+                return String.format("Guarantor %d can only guarantee Ksh %.2f more (already guaranteeing Ksh %.2f).",
+                        guarantorId, Math.max(available, 0), current);
+            }
+        }
+        return null;
+    }
+
+    public synchronized double getExposure(int memberId) {
+        Guarantor guarantor = guarantors.get(memberId);
+        return guarantor == null ? 0 : guarantor.exposure;
+    }
+
+    public synchronized int[] getGuaranteedLoans(int memberId) {
+        Guarantor guarantor = guarantors.get(memberId);
+        return guarantor == null ? new int[0] : guarantor.loanIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public static void onLoanCreated(int loanId, double amount, int[] guarantorIds) {
+        GuarantorIndex index = loaded();
+        if (index != null) {
+            index.addLoan(loanId, amount, guarantorIds);
+        }
+    }
+
+    // A repayment of the given amount was posted against the loan
+    public static void onRepayment(int loanId, double amount) {
+        GuarantorIndex index = loaded();
+        if (index != null) {
+            synchronized (index) {
+                GuaranteedLoan loan = index.loans.get(loanId);
+                if (loan != null) {
+                    index.updateBalance(loanId, loan.outstanding - amount);
+                }
+            }
+        }
+    }
+
+    public static void onBalanceChanged(int loanId, double newBalance) {
+        GuarantorIndex index = loaded();
+        if (index != null) {
+            index.updateBalance(loanId, newBalance);
+        }
+    }
+
+    public static void onMemberAdded(int memberId, double shares) {
+        GuarantorIndex index = loaded();
+        if (index != null) {
+            synchronized (index) {
+                index.guarantors.computeIfAbsent(memberId, id -> new Guarantor(0)).shares = shares;
+            }
+        }
+    }
+}
@@ -3,6 +3,11 @@ import java.awt.*;
 
 public class HomePage {
     public static void main(String[] args) {
+        // Warm the member name index, totals and revenue while the welcome message is showing
+        MemberNameIndex.loadInBackground();
+        MemberTotals.loadInBackground();
+        RevenueLedger.loadInBackground();
+
         // Display welcome message
         JOptionPane.showMessageDialog(null,
                 "Fedha Youth Group System!\n" ,
@@ -32,6 +37,7 @@ public class HomePage {
         JButton fixedDepositsButton = new JButton("Fixed Deposits");
         JButton reportsButton = new JButton("Reports");
         JButton revenueButton = new JButton("View Revenue");
+        JButton diagnosticsButton = new JButton("Diagnostics");
         JButton exitButton = new JButton("Exit");
 
         // Add tooltips
@@ -39,14 +45,15 @@ public class HomePage {
         loansButton.setToolTipText("Apply for loans and view/manage existing loans.");
         fixedDepositsButton.setToolTipText("View and manage fixed deposits.");
         reportsButton.setToolTipText("Generate and export reports for members, loans, fixed deposits, dividends, and revenue.");
-        revenueButton.setToolTipText("View the organization's total revenue from loans and fixed deposits.");
+        revenueButton.setToolTipText("View the organization's revenue by month: loan interest, deposit interest and fees.");
+        diagnosticsButton.setToolTipText("Show query timings, slow queries and connection pool usage.");
         exitButton.setToolTipText("Exit the application.");
 
         // Button styling and alignment
         Font buttonFont = new Font("Arial", Font.BOLD, 16);
         Dimension buttonSize = new Dimension(250, 50);
 
-        for (JButton button : new JButton[]{membersButton, loansButton, fixedDepositsButton, reportsButton, revenueButton, exitButton}) {
+        for (JButton button : new JButton[]{membersButton, loansButton, fixedDepositsButton, reportsButton, revenueButton, diagnosticsButton, exitButton}) {
             button.setFont(buttonFont);
             button.setMaximumSize(buttonSize);
             button.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -63,6 +70,8 @@ public class HomePage {
         menuPanel.add(reportsButton);
         menuPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         menuPanel.add(revenueButton);
+        menuPanel.add(Box.createRigidArea(new Dimension(0, 15)));
+        menuPanel.add(diagnosticsButton);
         menuPanel.add(Box.createRigidArea(new Dimension(0, 50)));
         menuPanel.add(exitButton);
         menuPanel.add(Box.createVerticalGlue());
@@ -72,10 +81,8 @@ public class HomePage {
         loansButton.addActionListener(e -> new LoanManagement());
         fixedDepositsButton.addActionListener(e -> new FixedDepositManagement());
         reportsButton.addActionListener(e -> new ReportsForm());
-        revenueButton.addActionListener(e -> {
-            JOptionPane.showMessageDialog(frame,
-                    "coming soon!", "Revenue", JOptionPane.INFORMATION_MESSAGE);
-        });
+        revenueButton.addActionListener(e -> new RevenueDashboard());
+        diagnosticsButton.addActionListener(e -> new DiagnosticsWindow());
         exitButton.addActionListener(e -> {
             int confirmExit = JOptionPane.showConfirmDialog(frame,
                     "Are you sure you want to exit?", "Confirm Exit",
@@ -0,0 +1,187 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+// Statement wrapper handed out by pooled connections. Reports the pooled handle
+// from getConnection() so callers never reach the physical connection, tells the
+// pool when it is closed, and, when query statistics are on, times every execute
+// call in QueryStats and counts the rows read from its result sets.
+final class InstrumentedStatement implements InvocationHandler {
+    private final Statement target;
+    private final Connection connection;
+    private final String caller;
+    private final String preparedSql;
+    private final Runnable onClose;
+    private String batchSql;
+
+    private InstrumentedStatement(Statement target, Connection connection, String caller, String preparedSql,
+                                  Runnable onClose) {
+        this.target = target;
+        this.connection = connection;
+        this.caller = caller;
+        this.preparedSql = preparedSql;
+        this.onClose = onClose;
+    }
+
+    // caller is null when query statistics are off; preparedSql is null for plain
+    // Statements, whose SQL arrives with each execute call
+    static Statement wrap(Statement target, Connection connection, String caller, String preparedSql,
+                          Runnable onClose) {
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(),
+                new Class<?>[]{type}, new InstrumentedStatement(target, connection, caller, preparedSql, onClose));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "getConnection":
+                return connection;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "unwrap":
+            case "isWrapperFor":
+                return invokeTarget(method, args);
+            case "close":
+                try {
+                    return invokeTarget(method, args);
+                } finally {
+                    onClose.run();
+                }
+            case "addBatch":
+                if (preparedSql == null && batchSql == null && args != null && args.length == 1) {
+                    batchSql = (String) args[0];
+                }
+                return invokeTarget(method, args);
+            case "getResultSet": {
+                Object result = invokeTarget(method, args);
+                return result == null ? null : RowCounter.wrap((ResultSet) result, (Statement) proxy, null);
+            }
+            default:
+                break;
+        }
+        if (caller == null || !name.startsWith("execute")) {
+            Object result = invokeTarget(method, args);
+            return result instanceof ResultSet ? RowCounter.wrap((ResultSet) result, (Statement) proxy, null) : result;
+        }
+
+        QueryStats.StatementStats stats = QueryStats.statement(caller, sqlFor(name, args));
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            QueryStats.recordExecution(stats, System.nanoTime() - start, e.getCause());
+            throw e.getCause();
+        }
+        QueryStats.recordExecution(stats, System.nanoTime() - start, null);
+
+        if (result instanceof ResultSet) {
+            return RowCounter.wrap((ResultSet) result, (Statement) proxy, stats);
+        }
+        if (result instanceof Integer) {
+            stats.addRows(Math.max(0, (Integer) result));
+        } else if (result instanceof Long) {
+            stats.addRows(Math.max(0, (Long) result));
+        } else if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                stats.addRows(Math.max(0, count));
+            }
+        } else if (result instanceof long[]) {
+            for (long count : (long[]) result) {
+                stats.addRows(Math.max(0, count));
+            }
+        }
+        return result;
+    }
+
+    private String sqlFor(String method, Object[] args) {
+        if (preparedSql != null) {
+            return preparedSql;
+        }
+        if (args != null && args.length > 0 && args[0] instanceof String) {
+            return (String) args[0];
+        }
+        if (method.equals("executeBatch") || method.equals("executeLargeBatch")) {
+            return batchSql == null ? "(batch)" : batchSql + " (batch)";
+        }
+        return null;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Counts rows as they are read; the count is recorded once the result set is
+    // exhausted or closed
+    private static final class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final Statement statement;
+        private final QueryStats.StatementStats stats;
+        private long rows = 0;
+        private boolean recorded = false;
+
+        private RowCounter(ResultSet target, Statement statement, QueryStats.StatementStats stats) {
+            this.target = target;
+            this.statement = statement;
+            this.stats = stats;
+        }
+
+        static ResultSet wrap(ResultSet target, Statement statement, QueryStats.StatementStats stats) {
+            return (ResultSet) Proxy.newProxyInstance(InstrumentedStatement.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new RowCounter(target, statement, stats));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getStatement":
+                    return statement;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    record();
+                    break;
+                default:
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("next")) {
+                if ((Boolean) result) {
+                    rows++;
+                } else {
+                    record();
+                }
+            }
+            return result;
+        }
+
+        private void record() {
+            if (!recorded && stats != null) {
+                recorded = true;
+                stats.addRows(rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-member fixed deposit interest. Every member gets one row per month in
+// member_interest_accruals holding their shares and the interest earned on them
+// (FixedDepositService.MONTHLY_RATE, or nothing while they have an active loan,
+// the same rule as the pool-wide fixed deposit).
+//
+// Members are read once, split into contiguous partitions and written in parallel,
+// each partition on its own pooled connection with batched upserts committed every
+// BATCH_SIZE rows. Rows are keyed by (MemberID, Period), so a run can be repeated
+// or resumed after a failure without double counting. Missed months are caught up
+// in the same run; shares are not kept historically, so back-dated months use the
+// current shares.
+//
+// Usage: InterestAccrualEngine [from-month [through-month]]   (months as yyyy-MM)
+public class InterestAccrualEngine {
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_ACCRUAL_THREADS",
+            String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String UPSERT = "INSERT INTO member_interest_accruals (MemberID, Period, Balance, Interest) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE Balance = VALUES(Balance), Interest = VALUES(Interest)";
+
+    public static final class Result {
+        public final YearMonth from;
+        public final YearMonth through;
+        public final int members;
+        public final long rows;
+        public final double totalInterest;
+        public final long millis;
+
+        Result(YearMonth from, YearMonth through, int members, long rows, double totalInterest, long millis) {
+            this.from = from;
+            this.through = through;
+            this.members = members;
+            this.rows = rows;
+            this.totalInterest = totalInterest;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            String months = from.equals(through) ? from.toString() : from + " to " + through;
+            return String.format("Accrued interest for %s: %d members, %d rows, Ksh %.2f in %.1f s",
+                    months, members, rows, totalInterest, millis / 1000.0);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Result result;
+        if (args.length == 0) {
+            result = accrueDue(JobControl.NONE);
+        } else {
+            YearMonth from = YearMonth.parse(args[0]);
+            result = accrue(from, args.length > 1 ? YearMonth.parse(args[1]) : from, JobControl.NONE);
+        }
+        System.out.println(result);
+        System.exit(0);
+    }
+
+    // Catch up from the month after the last accrued one through the current month.
+    // The current month is always re-run so share changes during the month are picked up.
+    public static Result accrueDue(JobControl job) throws SQLException {
+        YearMonth current = YearMonth.now();
+        YearMonth last = lastAccruedPeriod();
+        YearMonth from = last == null || !last.isBefore(current) ? current : last.plusMonths(1);
+        return accrue(from, current, job);
+    }
+
+    public static YearMonth lastAccruedPeriod() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(Period) FROM member_interest_accruals")) {
+            Date period = rs.next() ? rs.getDate(1) : null;
+            return period == null ? null : YearMonth.from(period.toLocalDate());
+        }
+    }
+
+    public static Result accrue(YearMonth from, YearMonth through, JobControl job) throws SQLException {
+        if (through.isBefore(from)) {
+            throw new IllegalArgumentException("Accrual period " + from + " is after " + through + ".");
+        }
+        long start = System.nanoTime();
+        job.progress(0, 0, "Loading members...");
+
+        // Members as parallel arrays, plus everyone with an active loan
+        int[] memberIds = new int[1024];
+        double[] shares = new double[1024];
+        int count = 0;
+        BitSet borrowers = new BitSet();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (Statement stmt = job.track(conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+                stmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+                try (ResultSet rs = stmt.executeQuery("SELECT MemberID, Shares FROM members")) {
+                    while (rs.next()) {
+                        if (count == memberIds.length) {
+                            job.checkCancelled();
+                            memberIds = Arrays.copyOf(memberIds, count * 2);
+                            shares = Arrays.copyOf(shares, count * 2);
+                        }
+                        memberIds[count] = rs.getInt(1);
+                        shares[count] = rs.getDouble(2);
+                        count++;
+                    }
+                }
+            }
+            try (Statement stmt = job.track(conn.createStatement());
+                 ResultSet rs = stmt.executeQuery("SELECT DISTINCT MemberID FROM loans WHERE LoanStatus = 'Active'")) {
+                while (rs.next()) {
+                    borrowers.set(rs.getInt(1));
+                }
+            }
+        }
+
+        int months = (int) (through.getYear() * 12L + through.getMonthValue() - from.getYear() * 12L - from.getMonthValue()) + 1;
+        Date[] periods = new Date[months];
+        for (int i = 0; i < months; i++) {
+            periods[i] = Date.valueOf(from.plusMonths(i).atDay(1));
+        }
+
+        long totalRows = (long) count * months;
+        AtomicLong written = new AtomicLong();
+        int partitions = Math.max(1, Math.min(THREADS, count / BATCH_SIZE));
+        int partitionSize = (count + partitions - 1) / partitions;
+        ExecutorService executor = Executors.newFixedThreadPool(partitions, r -> {
+            Thread t = new Thread(r, "interest-accrual");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Double>> results = new ArrayList<>();
+        double totalInterest = 0;
+        try {
+            for (int p = 0; p < partitions; p++) {
+                int lo = p * partitionSize;
+                int hi = Math.min(count, lo + partitionSize);
+                int[] ids = memberIds;
+                double[] balances = shares;
+                results.add(executor.submit(() -> writePartition(ids, balances, lo, hi, borrowers, periods, job, written, totalRows)));
+            }
+            for (Future<Double> result : results) {
+                totalInterest += result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while accruing interest.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Interest accrual failed: " + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+            TableVersions.bump(TableVersions.MEMBER_INTEREST_ACCRUALS);
+        }
+        return new Result(from, through, count, totalRows, totalInterest, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Upsert rows [lo, hi) for every period; returns the interest written
+    private static double writePartition(int[] memberIds, double[] shares, int lo, int hi, BitSet borrowers, Date[] periods,
+                                         JobControl job, AtomicLong written, long totalRows) throws SQLException {
+        double interestTotal = 0;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = job.track(conn.prepareStatement(UPSERT))) {
+                int pending = 0;
+                for (int i = lo; i < hi; i++) {
+                    double interest = borrowers.get(memberIds[i]) ? 0 : shares[i] * FixedDepositService.MONTHLY_RATE;
+                    for (Date period : periods) {
+                        stmt.setInt(1, memberIds[i]);
+                        stmt.setDate(2, period);
+                        stmt.setDouble(3, shares[i]);
+                        stmt.setDouble(4, interest);
+                        stmt.addBatch();
+                        interestTotal += interest;
+                        if (++pending == BATCH_SIZE) {
+                            flush(conn, stmt, job, written, pending, totalRows);
+                            pending = 0;
+                        }
+                    }
+                }
+                if (pending > 0) {
+                    flush(conn, stmt, job, written, pending, totalRows);
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        return interestTotal;
+    }
+
+    private static void flush(Connection conn, PreparedStatement stmt, JobControl job, AtomicLong written, int rows,
+                              long totalRows) throws SQLException {
+        job.checkCancelled();
+        stmt.executeBatch();
+        conn.commit();
+        job.progress(written.addAndGet(rows), totalRows, "Accruing member interest...");
+    }
+}
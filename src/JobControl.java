@@ -0,0 +1,29 @@
+import java.sql.Statement;
+
+// Cancellation and progress hooks for long-running database jobs. Implemented by
+// AsyncData.Task for the Swing screens; NONE is used when running without a UI.
+public interface JobControl {
+    JobControl NONE = new JobControl() {
+        @Override
+        public void checkCancelled() {
+        }
+
+        @Override
+        public <S extends Statement> S track(S statement) {
+            return statement;
+        }
+
+        @Override
+        public void progress(long done, long total, String message) {
+        }
+    };
+
+    // Throw a CancellationException if the job has been cancelled
+    void checkCancelled();
+
+    // Register a running statement so cancelling the job also aborts the query
+    <S extends Statement> S track(S statement);
+
+    // Report progress; total <= 0 means the amount of work is unknown
+    void progress(long done, long total, String message);
+}
@@ -1,37 +1,24 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 public class LoanManagement {
+    private static final String LOAN_FAILED = "Loan application failed. Check the guarantors or loan limit.";
+
     private JFrame frame;
     private JTabbedPane tabbedPane;
-    private DefaultTableModel loanTableModel;
-
-    // Loan Types and their rules
-    private final Map<String, Double> loanInterestRates = new HashMap<>();
-    private final Map<String, Integer> loanRepaymentPeriods = new HashMap<>();
-    private final Map<String, Double> loanMultipliers = new HashMap<>();
+    private final BusyIndicator busyIndicator = new BusyIndicator();
+    private LoanTableModel loanTableModel;
+    private JComboBox<String> statusFilterBox;
+    private JComboBox<String> typeFilterBox;
+    private JTextField memberFilterField;
+    private JComboBox<LoanTableModel.Sort> sortBox;
+    private JComboBox<String> orderBox;
 
     public LoanManagement() {
-        // Initialize loan rules
-        loanInterestRates.put("Emergency", 0.3);
-        loanInterestRates.put("Short", 0.6);
-        loanInterestRates.put("Normal", 1.0);
-        loanInterestRates.put("Development", 1.4);
-
-        loanRepaymentPeriods.put("Emergency", 12);
-        loanRepaymentPeriods.put("Short", 24);
-        loanRepaymentPeriods.put("Normal", 36);
-        loanRepaymentPeriods.put("Development", 48);
-
-        loanMultipliers.put("Emergency", 1.0);
-        loanMultipliers.put("Short", 2.0);
-        loanMultipliers.put("Normal", 3.0);
-        loanMultipliers.put("Development", 5.0);
-
         // Initialize frame and UI
         frame = new JFrame("Loans Section");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -39,10 +26,7 @@ public class LoanManagement {
         frame.setLayout(new BorderLayout());
         frame.setLocationRelativeTo(null);
 
-        loanTableModel = new DefaultTableModel(new String[]{
-                "Loan ID", "Member ID", "Loan Amount", "Loan Type", "Interest Rate",
-                "Repayment Period", "Monthly Repayment", "Outstanding Balance", "Guarantors", "Status"
-        }, 0);
+        loanTableModel = new LoanTableModel(busyIndicator);
 
         tabbedPane = new JTabbedPane(JTabbedPane.TOP);
         tabbedPane.setTabLayoutPolicy(JTabbedPane.SCROLL_TAB_LAYOUT);
@@ -60,6 +44,7 @@ public class LoanManagement {
         });
 
         frame.add(tabbedPane, BorderLayout.CENTER);
+        frame.add(busyIndicator, BorderLayout.SOUTH);
         frame.setVisible(true);
     }
 
@@ -68,7 +53,36 @@ public class LoanManagement {
 
         JLabel title = new JLabel("View and Manage Loans", SwingConstants.CENTER);
         title.setFont(new Font("Arial", Font.BOLD, 18));
-        panel.add(title, BorderLayout.NORTH);
+
+        // Filters are applied by the database; only the visible pages are fetched
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        statusFilterBox = new JComboBox<>(new String[]{LoanTableModel.ALL, "Active", "Cleared"});
+        typeFilterBox = new JComboBox<>();
+        typeFilterBox.addItem(LoanTableModel.ALL);
+        for (String type : LoanRules.TYPES) {
+            typeFilterBox.addItem(type);
+        }
+        memberFilterField = new JTextField(6);
+        sortBox = new JComboBox<>(LoanTableModel.Sort.values());
+        orderBox = new JComboBox<>(new String[]{"Ascending", "Descending"});
+        JButton filterButton = new JButton("Apply");
+        filterButton.addActionListener(e -> loadLoansIntoTable());
+
+        filterPanel.add(new JLabel("Status:"));
+        filterPanel.add(statusFilterBox);
+        filterPanel.add(new JLabel("Type:"));
+        filterPanel.add(typeFilterBox);
+        filterPanel.add(new JLabel("Member ID:"));
+        filterPanel.add(memberFilterField);
+        filterPanel.add(new JLabel("Sort by:"));
+        filterPanel.add(sortBox);
+        filterPanel.add(orderBox);
+        filterPanel.add(filterButton);
+
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(title, BorderLayout.NORTH);
+        headerPanel.add(filterPanel, BorderLayout.SOUTH);
+        panel.add(headerPanel, BorderLayout.NORTH);
 
         JTable loansTable = new JTable(loanTableModel);
         JScrollPane scrollPane = new JScrollPane(loansTable);
@@ -133,47 +147,84 @@ public class LoanManagement {
         JLabel loanAmountLabel = new JLabel("Loan Amount:");
         JTextField loanAmountField = new JTextField(15);
         JLabel loanTypeLabel = new JLabel("Loan Type:");
-        JComboBox<String> loanTypeComboBox = new JComboBox<>(new String[]{"Emergency", "Short", "Normal", "Development"});
+        JComboBox<String> loanTypeComboBox = new JComboBox<>(LoanRules.TYPES);
         JLabel guarantorLabel = new JLabel("Guarantor IDs (comma-separated):");
         JTextField guarantorField = new JTextField(15);
+        JButton findMemberButton = new JButton("Find...");
+        JButton findGuarantorButton = new JButton("Add...");
+
+        findMemberButton.setToolTipText("Look up the member by name.");
+        findGuarantorButton.setToolTipText("Look up a guarantor by name and add their ID.");
+        findMemberButton.addActionListener(e -> {
+            Integer memberId = MemberLookupDialog.pickMember(frame, "Find Member");
+            if (memberId != null) {
+                memberIdField.setText(String.valueOf(memberId));
+            }
+        });
+        findGuarantorButton.addActionListener(e -> {
+            Integer guarantorId = MemberLookupDialog.pickMember(frame, "Find Guarantor");
+            if (guarantorId != null) {
+                String current = guarantorField.getText().trim();
+                guarantorField.setText(current.isEmpty() ? String.valueOf(guarantorId) : current + "," + guarantorId);
+            }
+        });
 
         JButton applyButton = new JButton("Apply Loan");
         JButton backButton = new JButton("Back");
 
         applyButton.addActionListener(e -> {
+            int memberId;
+            double loanAmount;
+            try {
+                memberId = Integer.parseInt(memberIdField.getText().trim());
+                loanAmount = Double.parseDouble(loanAmountField.getText().trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Please enter valid numeric values for Member ID and Loan Amount.");
+                return;
+            }
+            String loanType = (String) loanTypeComboBox.getSelectedItem();
+            int[] guarantorIds;
             try {
-                int memberId = Integer.parseInt(memberIdField.getText().trim());
-                double loanAmount = Double.parseDouble(loanAmountField.getText().trim());
-                String loanType = (String) loanTypeComboBox.getSelectedItem();
-                String[] guarantorIds = guarantorField.getText().split(",");
+                guarantorIds = parseGuarantorIds(guarantorField.getText());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Guarantor IDs must be member IDs separated by commas.");
+                return;
+            }
 
+            AsyncData.runOnce("loans.apply", busyIndicator, task -> {
                 if (!isEligibleForLoan(memberId)) {
-                    JOptionPane.showMessageDialog(frame, "Member is not eligible for any loan. Shares must exceed Ksh 4,000.");
-                    return;
+                    return String.format("Member is not eligible for any loan. Shares must be at least Ksh %,.0f.",
+                            LoanRules.current().minContributions);
                 }
 
-                double maxLoanAmount = getMaxLoanAmount(memberId, loanType);
+                double shares = getTotalShares(memberId);
+                LoanRules rules = LoanRules.current();
+                if (!rules.qualifiesFor(shares, loanType)) {
+                    return String.format("%s loans need shares of at least Ksh %,.0f; this member has Ksh %,.0f.",
+                            loanType, rules.minShares(LoanRules.typeIndex(loanType)), shares);
+                }
+
+                double maxLoanAmount = maxLoanAmount(shares, loanType);
                 if (loanAmount > maxLoanAmount) {
-                    JOptionPane.showMessageDialog(frame, "Loan amount exceeds your eligible limit for " + loanType + ".");
-                    return;
+                    return "Loan amount exceeds your eligible limit for " + loanType + ".";
+                }
+
+                String guarantorProblem = GuarantorIndex.get().validate(memberId, loanAmount, guarantorIds);
+                if (guarantorProblem != null) {
+                    return guarantorProblem;
                 }
 
-                if (applyForLoan(memberId, loanAmount, loanType, guarantorIds)) {
+                return applyForLoan(memberId, loanAmount, loanType, guarantorIds);
+            }, failure -> {
+                if (failure == null) {
                     JOptionPane.showMessageDialog(frame, "Loan applied successfully and automatically accepted!");
+                    memberIdField.setText("");
+                    loanAmountField.setText("");
+                    guarantorField.setText("");
                 } else {
-                    JOptionPane.showMessageDialog(frame, "Loan application failed. Check the guarantors or loan limit.");
+                    JOptionPane.showMessageDialog(frame, failure);
                 }
-
-                memberIdField.setText("");
-                loanAmountField.setText("");
-                guarantorField.setText("");
-
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(frame, "Please enter valid numeric values for Member ID and Loan Amount.");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "An error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
-            }
+            }, this::showError);
         });
 
         backButton.addActionListener(e -> tabbedPane.setSelectedIndex(0));
@@ -190,6 +241,8 @@ public class LoanManagement {
         panel.add(memberIdLabel, gbc);
         gbc.gridx = 1;
         panel.add(memberIdField, gbc);
+        gbc.gridx = 2;
+        panel.add(findMemberButton, gbc);
 
         gbc.gridx = 0;
         gbc.gridy++;
@@ -208,6 +261,9 @@ public class LoanManagement {
         panel.add(guarantorLabel, gbc);
         gbc.gridx = 1;
         panel.add(guarantorField, gbc);
+        gbc.gridx = 2;
+        panel.add(findGuarantorButton, gbc);
+        gbc.gridx = 0;
 
         gbc.gridwidth = 2;
         gbc.gridy++;
@@ -234,27 +290,40 @@ public class LoanManagement {
         JLabel amountLabel = new JLabel("Repayment Amount:");
         JTextField amountField = new JTextField(15);
 
+        JButton findLoanButton = new JButton("Find by Member...");
         JButton repayButton = new JButton("Repay");
+        JButton importButton = new JButton("Import Statement...");
         JButton backButton = new JButton("Back");
 
+        importButton.setToolTipText("Post all repayments in a statement file (LoanID,Amount per line).");
+        importButton.addActionListener(e -> importRepaymentStatement(loanDetailsArea));
+        findLoanButton.setToolTipText("Look up the member by name and pick one of their active loans.");
+        findLoanButton.addActionListener(e -> findLoanByMember(loanIdField));
+
         repayButton.addActionListener(e -> {
+            int loanId;
+            double repaymentAmount;
             try {
-                int loanId = Integer.parseInt(loanIdField.getText().trim());
-                double repaymentAmount = Double.parseDouble(amountField.getText().trim());
+                loanId = Integer.parseInt(loanIdField.getText().trim());
+                repaymentAmount = Double.parseDouble(amountField.getText().trim());
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Please enter valid numeric values.");
+                return;
+            }
 
+            AsyncData.runOnce("loans.repay", busyIndicator, task -> {
                 if (repayLoan(loanId, repaymentAmount)) {
+                    return getLoanDetails(loanId);
+                }
+                return null;
+            }, details -> {
+                if (details != null) {
                     JOptionPane.showMessageDialog(frame, "Repayment successful!");
-                    loanDetailsArea.setText(getLoanDetails(loanId));
+                    loanDetailsArea.setText(details);
                 } else {
-                    JOptionPane.showMessageDialog(frame, "Repayment failed. Check loan ID or amount.");
+                    JOptionPane.showMessageDialog(frame, "Repayment failed. Check the loan ID and amount, and that the loan is still active.");
                 }
-
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(frame, "Please enter valid numeric values.");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(frame, "An error occurred: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace();
-            }
+            }, this::showError);
         });
 
         backButton.addActionListener(e -> tabbedPane.setSelectedIndex(0));
@@ -271,6 +340,8 @@ public class LoanManagement {
         panel.add(loanIdLabel, gbc);
         gbc.gridx = 1;
         panel.add(loanIdField, gbc);
+        gbc.gridx = 2;
+        panel.add(findLoanButton, gbc);
 
 
         gbc.gridx = 0;
@@ -281,7 +352,10 @@ public class LoanManagement {
 
         gbc.gridwidth = 2;
         gbc.gridy++;
-        panel.add(repayButton, gbc);
+        JPanel repayButtons = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        repayButtons.add(repayButton);
+        repayButtons.add(importButton);
+        panel.add(repayButtons, gbc);
 
         // Loan details label
         gbc.gridwidth = 1;
@@ -311,36 +385,66 @@ public class LoanManagement {
         return panel;
     }
 
-    private boolean repayLoan(int loanId, double repaymentAmount) {
-        String querySelect = "SELECT OutstandingBalance, LoanAmount FROM loans WHERE LoanID = ?";
-        String queryUpdate = "UPDATE loans SET OutstandingBalance = ?, LoanStatus = ? WHERE LoanID = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmtSelect = conn.prepareStatement(querySelect);
-             PreparedStatement pstmtUpdate = conn.prepareStatement(queryUpdate)) {
-
-            pstmtSelect.setInt(1, loanId);
-            ResultSet rs = pstmtSelect.executeQuery();
-
-            if (rs.next()) {
-                double outstandingBalance = rs.getDouble("OutstandingBalance");
-                double newBalance = outstandingBalance - repaymentAmount;
-
-                String newStatus = newBalance <= 0 ? "Cleared" : "Active";
-
-                pstmtUpdate.setDouble(1, Math.max(newBalance, 0));
-                pstmtUpdate.setString(2, newStatus);
-                pstmtUpdate.setInt(3, loanId);
+    // Conflicting concurrent repayments are retried by LoanRepayments; if the loan stays
+    // contended the SQLException reaches the error dialog instead of reading as "not found"
+    private boolean repayLoan(int loanId, double repaymentAmount) throws SQLException {
+        return LoanRepayments.repay(loanId, repaymentAmount);
+    }
 
-                return pstmtUpdate.executeUpdate() > 0;
-            } else {
-                JOptionPane.showMessageDialog(frame, "Loan ID not found.");
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private void findLoanByMember(JTextField loanIdField) {
+        Integer memberId = MemberLookupDialog.pickMember(frame, "Find Member");
+        if (memberId == null) {
+            return;
         }
+        String query = "SELECT LoanID, LoanType, OutstandingBalance FROM loans WHERE MemberID = ? AND LoanStatus = 'Active' ORDER BY LoanID";
+        AsyncData.run("loans.findByMember", busyIndicator, task -> {
+            List<String> loans = new ArrayList<>();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement pstmt = task.track(conn.prepareStatement(query))) {
+                pstmt.setInt(1, memberId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        loans.add(rs.getInt("LoanID") + " - " + rs.getString("LoanType")
+                                + " (Ksh " + rs.getDouble("OutstandingBalance") + " outstanding)");
+                    }
+                }
+            }
+            return loans;
+        }, loans -> {
+            if (loans.isEmpty()) {
+                JOptionPane.showMessageDialog(frame, "Member " + memberId + " has no active loans.");
+                return;
+            }
+            String chosen = loans.get(0);
+            if (loans.size() > 1) {
+                chosen = (String) JOptionPane.showInputDialog(frame, "Select a loan:", "Active Loans",
+                        JOptionPane.QUESTION_MESSAGE, null, loans.toArray(), loans.get(0));
+            }
+            if (chosen != null) {
+                loanIdField.setText(chosen.substring(0, chosen.indexOf(' ')));
+            }
+        }, this::showError);
+    }
 
-        return false;
+    private void importRepaymentStatement(JTextArea resultArea) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select Repayment Statement");
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File statement = fileChooser.getSelectedFile();
+
+        AsyncData.runOnce("loans.import", busyIndicator,
+                task -> new RepaymentImporter().importFile(statement, task),
+                result -> {
+                    resultArea.setText(result.summary());
+                    if (result.failure != null) {
+                        result.failure.printStackTrace();
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Statement Import Stopped", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Statement Imported", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                }, this::showError);
     }
 
     private String getLoanDetails(int loanId) {
@@ -370,47 +474,32 @@ public class LoanManagement {
     }
 
     private void loadLoansIntoTable() {
-        loanTableModel.setRowCount(0);
-
-        String query = "SELECT LoanID, MemberID, LoanAmount, LoanType, InterestRate, RepaymentPeriod, " +
-                "MonthlyRepayment, OutstandingBalance, GuarantorIDs, LoanStatus FROM loans";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            while (rs.next()) {
-                loanTableModel.addRow(new Object[]{
-                        rs.getInt("LoanID"),
-                        rs.getInt("MemberID"),
-                        rs.getDouble("LoanAmount"),
-                        rs.getString("LoanType"),
-                        rs.getDouble("InterestRate"),
-                        rs.getInt("RepaymentPeriod"),
-                        rs.getDouble("MonthlyRepayment"),
-                        rs.getDouble("OutstandingBalance"),
-                        rs.getString("GuarantorIDs"),
-                        rs.getString("LoanStatus")
-                });
+        Integer memberId = null;
+        String memberText = memberFilterField.getText().trim();
+        if (!memberText.isEmpty()) {
+            try {
+                memberId = Integer.parseInt(memberText);
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Member ID filter must be a number.");
+                return;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
+        loanTableModel.refresh(new LoanTableModel.Filter(
+                (String) statusFilterBox.getSelectedItem(),
+                (String) typeFilterBox.getSelectedItem(),
+                memberId,
+                (LoanTableModel.Sort) sortBox.getSelectedItem(),
+                orderBox.getSelectedIndex() == 1));
     }
 
-    private boolean isEligibleForLoan(int memberId) {
-        String query = "SELECT SUM(ContributionAmount) AS TotalShares FROM contributions WHERE MemberID = ?";
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-
-            pstmt.setInt(1, memberId);
-            ResultSet rs = pstmt.executeQuery();
+    private void showError(Exception e) {
+        JOptionPane.showMessageDialog(frame, "An error occurred: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        e.printStackTrace();
+    }
 
-            if (rs.next()) {
-                double totalShares = rs.getDouble("TotalShares");
-                return totalShares >= 4000;
-            }
+    private boolean isEligibleForLoan(int memberId) {
+        try {
+            return LoanRules.current().isEligible(ShareTotalsCache.getTotal(memberId));
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -418,41 +507,73 @@ public class LoanManagement {
         return false;
     }
 
-    private double getMaxLoanAmount(int memberId, String loanType) {
-        double shares = getTotalShares(memberId);
-        double multiplier = loanMultipliers.getOrDefault(loanType, 1.0);
-        return shares * multiplier;
+    static double maxLoanAmount(double shares, String loanType) {
+        return LoanRules.current().maxLoanAmount(shares, loanType);
     }
 
-    private double getTotalShares(int memberId) {
-        String query = "SELECT SUM(ContributionAmount) AS TotalShares FROM contributions WHERE MemberID = ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+    static double interestRateFactor(String loanType) {
+        return LoanRules.current().interestRateFactor(loanType);
+    }
 
-            pstmt.setInt(1, memberId);
-            ResultSet rs = pstmt.executeQuery();
+    static int repaymentPeriod(String loanType) {
+        return LoanRules.current().repaymentPeriod(loanType);
+    }
 
-            if (rs.next()) {
-                return rs.getDouble("TotalShares");
-            }
+    // Served from ShareTotalsCache; the eligibility check has usually just loaded it
+    private double getTotalShares(int memberId) {
+        try {
+            return ShareTotalsCache.getTotal(memberId);
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return 0.0;
     }
 
-    private boolean applyForLoan(int memberId, double loanAmount, String loanType, String[] guarantorIds) {
-        double rateFactor = loanInterestRates.getOrDefault(loanType, 0.0);
+    private static int[] parseGuarantorIds(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = trimmed.split(",");
+        int[] ids = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ids[i] = Integer.parseInt(parts[i].trim());
+        }
+        return ids;
+    }
+
+    // The loan, its loan_guarantors rows and its interest in revenue_monthly are written
+    // in one transaction; GuarantorIDs is still filled in for the reports that read it.
+    // The guarantors are checked again in that transaction, with their member rows locked.
+    // Returns null on success, otherwise why the loan was not created.
+    private String applyForLoan(int memberId, double loanAmount, String loanType, int[] guarantorIds) {
+        double rateFactor = interestRateFactor(loanType);
         double interestRatePercent = rateFactor * 100; // store as percentage for reporting
-        int repaymentPeriod = loanRepaymentPeriods.getOrDefault(loanType, 12);
+        int repaymentPeriod = repaymentPeriod(loanType);
         double totalRepayable = loanAmount * (1 + rateFactor);
         double monthlyRepayment = totalRepayable / repaymentPeriod;
-        String guarantors = String.join(",", guarantorIds);
+        StringBuilder guarantors = new StringBuilder();
+        for (int guarantorId : guarantorIds) {
+            if (guarantors.length() > 0) {
+                guarantors.append(",");
+            }
+            guarantors.append(guarantorId);
+        }
 
         String query = "INSERT INTO loans (MemberID, LoanAmount, LoanType, InterestRate, RepaymentPeriod, MonthlyRepayment, LoanStatus, GuarantorIDs, OutstandingBalance) " +
                 "VALUES (?, ?, ?, ?, ?, ?, 'Active', ?, ?)";
+        String guarantorQuery = "INSERT INTO loan_guarantors (LoanID, GuarantorID) VALUES (?, ?)";
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement pstmtGuarantor = conn.prepareStatement(guarantorQuery)) {
+
+            conn.setAutoCommit(false);
+
+            String guarantorProblem = GuarantorIndex.lockAndValidate(conn, loanAmount, guarantorIds);
+            if (guarantorProblem != null) {
+                conn.rollback();
+                return guarantorProblem;
+            }
 
             pstmt.setInt(1, memberId);
             pstmt.setDouble(2, loanAmount);
@@ -460,14 +581,36 @@ public class LoanManagement {
             pstmt.setDouble(4, interestRatePercent);
             pstmt.setInt(5, repaymentPeriod);
             pstmt.setDouble(6, monthlyRepayment);
-            pstmt.setString(7, guarantors);
+            pstmt.setString(7, guarantors.toString());
             pstmt.setDouble(8, loanAmount); // OutstandingBalance starts as full amount
+            pstmt.executeUpdate();
 
-            return pstmt.executeUpdate() > 0;
+            int loanId;
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    conn.rollback();
+                    return LOAN_FAILED;
+                }
+                loanId = keys.getInt(1);
+            }
+            for (int guarantorId : guarantorIds) {
+                pstmtGuarantor.setInt(1, loanId);
+                pstmtGuarantor.setInt(2, guarantorId);
+                pstmtGuarantor.addBatch();
+            }
+            pstmtGuarantor.executeBatch();
+            LoanSchedule.create(conn, loanId, java.time.LocalDate.now(), totalRepayable, monthlyRepayment, repaymentPeriod);
+            RevenueLedger.record(conn, java.time.LocalDate.now(), RevenueLedger.LOAN_INTEREST, loanAmount * rateFactor);
+            conn.commit();
+
+            TableVersions.bump(TableVersions.LOANS, TableVersions.LOAN_GUARANTORS, TableVersions.LOAN_SCHEDULE,
+                    TableVersions.REVENUE_MONTHLY);
+            GuarantorIndex.onLoanCreated(loanId, loanAmount, guarantorIds);
+            return null;
         } catch (SQLException e) {
             e.printStackTrace();
         }
-        return false;
+        return LOAN_FAILED;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,129 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrency rules for changing loan balances.
+//
+// A single repayment locks the loan's row, reads its balance and then runs one
+// atomic UPDATE that computes the new balance and status from the row's current
+// value, so two clerks posting against the same loan can never overwrite each other.
+// It only applies to an Active loan and a positive amount. What was actually applied
+// (never more than the balance) is then matched to the LoanSchedule and added to
+// revenue_monthly in the same transaction, so the loan's row lock is held until
+// those writes commit.
+//
+// Writers that have to compute a balance in Java first (the statement importer)
+// use the Version column instead: they read Version with the balance without
+// locking, then lock the rows and re-read Version just before writing with
+// "WHERE Version = ?". A loan whose Version moved in between lost a race; the writer
+// re-reads and retries it up to MAX_ATTEMPTS times with a short randomized back-off.
+public final class LoanRepayments {
+    static final int MAX_ATTEMPTS = 8;
+
+    private static final AtomicLong CONFLICTS = new AtomicLong();
+
+    private LoanRepayments() {
+    }
+
+    // Returns false when nothing was posted: the loan does not exist or is not Active,
+    // or the amount is not positive
+    public static boolean repay(int loanId, double amount) throws SQLException {
+        if (!Double.isFinite(amount) || amount <= 0) {
+            return false;
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            double applied;
+            conn.setAutoCommit(false);
+            try {
+                applied = repay(conn, loanId, amount);
+                if (applied >= 0) {
+                    LoanSchedule.applyPayments(conn, Collections.singletonMap(loanId, applied),
+                            isCleared(conn, loanId) ? Collections.singleton(loanId) : Collections.emptySet());
+                    RevenueLedger.record(conn, LocalDate.now(), RevenueLedger.REPAYMENTS, applied);
+                }
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            if (applied < 0) {
+                return false;
+            }
+            TableVersions.bump(TableVersions.LOANS, TableVersions.LOAN_SCHEDULE, TableVersions.REVENUE_MONTHLY);
+            GuarantorIndex.onRepayment(loanId, applied);
+            return true;
+        }
+    }
+
+    // Returns the amount applied to the balance (the repayment, or the balance when that
+    // is smaller), or -1 when nothing was posted. Callers passing their own connection
+    // run it inside a transaction, match the applied amount to the LoanSchedule and
+    // record it in RevenueLedger, and update GuarantorIndex and TableVersions once their
+    // transaction commits.
+    public static double repay(Connection conn, int loanId, double amount) throws SQLException {
+        double balance;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT OutstandingBalance FROM loans WHERE LoanID = ? AND LoanStatus = 'Active' FOR UPDATE")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                balance = rs.getDouble(1);
+            }
+        }
+
+        // LoanStatus is assigned first: MySQL evaluates SET assignments left to right,
+        // so it must see the balance from before this repayment
+        String query = "UPDATE loans SET " +
+                "LoanStatus = CASE WHEN OutstandingBalance - ? <= 0 THEN 'Cleared' ELSE 'Active' END, " +
+                "OutstandingBalance = GREATEST(OutstandingBalance - ?, 0), " +
+                "Version = Version + 1 " +
+                "WHERE LoanID = ? AND LoanStatus = 'Active' AND ? > 0";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setDouble(1, amount);
+            pstmt.setDouble(2, amount);
+            pstmt.setInt(3, loanId);
+            pstmt.setDouble(4, amount);
+            return pstmt.executeUpdate() > 0 ? Math.max(Math.min(amount, balance), 0) : -1;
+        }
+    }
+
+    private static boolean isCleared(Connection conn, int loanId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT LoanStatus FROM loans WHERE LoanID = ?")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && "Cleared".equals(rs.getString(1));
+            }
+        }
+    }
+
+    // Number of optimistic writes that lost a race and were retried since startup
+    public static long getConflictCount() {
+        return CONFLICTS.get();
+    }
+
+    static void recordConflicts(int count) {
+        CONFLICTS.addAndGet(count);
+    }
+
+    static void backOff(int attempt) throws SQLException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 1 + (2 << Math.min(attempt, 6))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying a loan update.", e);
+        }
+    }
+}
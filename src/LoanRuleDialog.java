@@ -0,0 +1,118 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.Properties;
+
+// Lets the committee edit a copy of the loan rules and see, with LoanRuleSimulator,
+// how eligibility and maximum exposure across the membership would change. Nothing
+// here changes the rules the application uses.
+public class LoanRuleDialog {
+    private static final String[] RULE_COLUMNS = {"Loan Type", "Min Shares", "Multiplier", "Interest Rate", "Repayment Months"};
+    private static final String[] RULE_KEYS = {null, "minShares", "multiplier", "interestRate", "repaymentPeriod"};
+
+    private final JDialog dialog;
+    private final DefaultTableModel rulesModel;
+    private final DefaultTableModel resultModel;
+    private final JTextField minContributionsField;
+    private final JLabel statusLabel = new JLabel(" ");
+    private final BusyIndicator busyIndicator = new BusyIndicator();
+
+    public LoanRuleDialog(Window owner) {
+        dialog = new JDialog(owner, "Loan Rule What-If", Dialog.ModalityType.MODELESS);
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.setLayout(new BorderLayout(5, 5));
+
+        LoanRules current = LoanRules.current();
+        rulesModel = new DefaultTableModel(RULE_COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return column > 0;
+            }
+        };
+        for (int t = 0; t < LoanRules.TYPES.length; t++) {
+            rulesModel.addRow(new Object[]{LoanRules.TYPES[t], current.minShares(t), current.multiplier(t),
+                    current.interestRate(t), current.repaymentPeriod(t)});
+        }
+        JTable rulesTable = new JTable(rulesModel);
+        rulesTable.setPreferredScrollableViewportSize(new Dimension(600, 80));
+        // Commit a cell being edited when Simulate is clicked
+        rulesTable.putClientProperty("terminateEditOnFocusLost", Boolean.TRUE);
+
+        minContributionsField = new JTextField(String.valueOf(current.minContributions), 10);
+        JButton simulateButton = new JButton("Simulate");
+        JButton resetButton = new JButton("Reset");
+        simulateButton.setToolTipText("Apply these rules to every member and compare with the current rules.");
+        resetButton.setToolTipText("Put the current rules back in the table.");
+        simulateButton.addActionListener(e -> simulate());
+        resetButton.addActionListener(e -> {
+            for (int t = 0; t < LoanRules.TYPES.length; t++) {
+                rulesModel.setValueAt(current.minShares(t), t, 1);
+                rulesModel.setValueAt(current.multiplier(t), t, 2);
+                rulesModel.setValueAt(current.interestRate(t), t, 3);
+                rulesModel.setValueAt(current.repaymentPeriod(t), t, 4);
+            }
+            minContributionsField.setText(String.valueOf(current.minContributions));
+        });
+
+        JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        controlPanel.add(new JLabel("Minimum Contributions:"));
+        controlPanel.add(minContributionsField);
+        controlPanel.add(simulateButton);
+        controlPanel.add(resetButton);
+
+        JPanel rulesPanel = new JPanel(new BorderLayout());
+        rulesPanel.setBorder(BorderFactory.createTitledBorder("Candidate Rules"));
+        rulesPanel.add(new JScrollPane(rulesTable), BorderLayout.CENTER);
+        rulesPanel.add(controlPanel, BorderLayout.SOUTH);
+
+        resultModel = new DefaultTableModel(LoanRuleSimulator.COLUMNS, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JPanel resultPanel = new JPanel(new BorderLayout());
+        resultPanel.setBorder(BorderFactory.createTitledBorder("Effect on the Membership"));
+        resultPanel.add(new JScrollPane(new JTable(resultModel)), BorderLayout.CENTER);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(statusLabel, BorderLayout.CENTER);
+        southPanel.add(busyIndicator, BorderLayout.SOUTH);
+
+        dialog.add(rulesPanel, BorderLayout.NORTH);
+        dialog.add(resultPanel, BorderLayout.CENTER);
+        dialog.add(southPanel, BorderLayout.SOUTH);
+        dialog.setSize(750, 650);
+        dialog.setLocationRelativeTo(owner);
+        dialog.setVisible(true);
+    }
+
+    private void simulate() {
+        LoanRules candidate;
+        try {
+            Properties overrides = new Properties();
+            overrides.setProperty("minContributions", minContributionsField.getText().trim());
+            for (int t = 0; t < LoanRules.TYPES.length; t++) {
+                for (int c = 1; c < RULE_KEYS.length; c++) {
+                    overrides.setProperty(LoanRules.TYPES[t] + "." + RULE_KEYS[c], String.valueOf(rulesModel.getValueAt(t, c)));
+                }
+            }
+            candidate = LoanRules.current().withOverrides(overrides);
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(dialog, ex.getMessage(), "Invalid Rules", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        AsyncData.run("loanRules.simulate", busyIndicator, task -> LoanRuleSimulator.simulate(candidate, task), result -> {
+            resultModel.setRowCount(0);
+            for (Object[] row : result.rows()) {
+                resultModel.addRow(row);
+            }
+            statusLabel.setText(result.summary());
+        }, ex -> {
+            JOptionPane.showMessageDialog(dialog, "Error running the simulation: " + ex.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        });
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+// What-if runs for the loan rules: applies the current LoanRules and a candidate set
+// to every member and reports how many members can borrow, the highest loan type
+// they qualify for and the most they could borrow in total (their contribution total
+// times that type's multiplier, for members who meet the minimum), with the interest
+// that exposure would carry. This is the figure the loan form checks the type
+// thresholds, limits and minimum against.
+//
+// Members' contribution totals are read once into a primitive array and
+// kept until members or member_share_totals change (TableVersions) or
+// FEDHA_SIMULATOR_CACHE_SECONDS (default 300) pass, so trying one candidate after
+// another only repeats the fork/join pass over the arrays.
+//
+// Usage: LoanRuleSimulator <rules.properties>   (keys as in LoanRules.withOverrides)
+public final class LoanRuleSimulator {
+    public static final String[] COLUMNS = {"Measure", "Current", "Candidate", "Change"};
+
+    private static final String[] SOURCE_TABLES = {TableVersions.MEMBERS, TableVersions.MEMBER_SHARE_TOTALS};
+    private static final long MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("FEDHA_SIMULATOR_CACHE_SECONDS", "300")));
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_ANALYTICS_THREADS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int MIN_SLICE = 16_384;
+
+    private static Members cached;
+
+    private LoanRuleSimulator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: LoanRuleSimulator <rules.properties>");
+            System.exit(2);
+        }
+        Properties overrides = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            overrides.load(in);
+        }
+        Result result = simulate(LoanRules.current().withOverrides(overrides), JobControl.NONE);
+        for (Object[] row : result.rows()) {
+            System.out.printf(Locale.ROOT, "%-40s %18s %18s %18s%n", row);
+        }
+        System.out.println(result.summary());
+        System.exit(0);
+    }
+
+    static final class Members {
+        final int size;
+        final double[] contributions;
+        final long[] versions;
+        final long loadedAt;
+
+        Members(int size, double[] contributions, long[] versions, long loadedAt) {
+            this.size = size;
+            this.contributions = contributions;
+            this.versions = versions;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // Totals for one rule set; type arrays are indexed like LoanRules.TYPES
+    static final class SideTotals {
+        long eligible;
+        final long[] typeCounts = new long[LoanRules.TYPES.length];
+        final double[] exposure = new double[LoanRules.TYPES.length];
+        final double[] interest = new double[LoanRules.TYPES.length];
+
+        void add(SideTotals other) {
+            eligible += other.eligible;
+            for (int t = 0; t < typeCounts.length; t++) {
+                typeCounts[t] += other.typeCounts[t];
+                exposure[t] += other.exposure[t];
+                interest[t] += other.interest[t];
+            }
+        }
+
+        double totalExposure() {
+            double total = 0;
+            for (double e : exposure) {
+                total += e;
+            }
+            return total;
+        }
+
+        double totalInterest() {
+            double total = 0;
+            for (double i : interest) {
+                total += i;
+            }
+            return total;
+        }
+    }
+
+    static final class Totals {
+        final SideTotals current = new SideTotals();
+        final SideTotals candidate = new SideTotals();
+        long gained;
+        long lost;
+        long typeChanged;
+        long limitUp;
+        long limitDown;
+
+        void add(Totals other) {
+            current.add(other.current);
+            candidate.add(other.candidate);
+            gained += other.gained;
+            lost += other.lost;
+            typeChanged += other.typeChanged;
+            limitUp += other.limitUp;
+            limitDown += other.limitDown;
+        }
+    }
+
+    public static final class Result {
+        public final int members;
+        final Totals totals;
+        public long loadMillis;
+        public long computeMillis;
+
+        Result(int members, Totals totals) {
+            this.members = members;
+            this.totals = totals;
+        }
+
+        public List<Object[]> rows() {
+            SideTotals current = totals.current;
+            SideTotals candidate = totals.candidate;
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(count("Members", members, members));
+            rows.add(count("Eligible to borrow", current.eligible, candidate.eligible));
+            for (int t = 0; t < LoanRules.TYPES.length; t++) {
+                rows.add(count("Eligible for " + LoanRules.TYPES[t], current.typeCounts[t], candidate.typeCounts[t]));
+            }
+            rows.add(amount("Maximum exposure", current.totalExposure(), candidate.totalExposure()));
+            for (int t = 0; t < LoanRules.TYPES.length; t++) {
+                rows.add(amount("Maximum exposure, " + LoanRules.TYPES[t], current.exposure[t], candidate.exposure[t]));
+            }
+            rows.add(amount("Interest at maximum exposure", current.totalInterest(), candidate.totalInterest()));
+            rows.add(new Object[]{"Members gaining eligibility", "", "", String.valueOf(totals.gained)});
+            rows.add(new Object[]{"Members losing eligibility", "", "", String.valueOf(totals.lost)});
+            rows.add(new Object[]{"Members changing loan type", "", "", String.valueOf(totals.typeChanged)});
+            rows.add(new Object[]{"Members with a higher limit", "", "", String.valueOf(totals.limitUp)});
+            rows.add(new Object[]{"Members with a lower limit", "", "", String.valueOf(totals.limitDown)});
+            return rows;
+        }
+
+        private static Object[] count(String measure, long current, long candidate) {
+            return new Object[]{measure, String.valueOf(current), String.valueOf(candidate),
+                    String.format(Locale.ROOT, "%+d", candidate - current)};
+        }
+
+        private static Object[] amount(String measure, double current, double candidate) {
+            return new Object[]{measure, String.format(Locale.ROOT, "%.2f", current), String.format(Locale.ROOT, "%.2f", candidate),
+                    String.format(Locale.ROOT, "%+.2f", candidate - current)};
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT, "%d members (read %d ms, simulated %d ms)", members, loadMillis, computeMillis);
+        }
+    }
+
+    public static Result simulate(LoanRules candidate, JobControl job) throws SQLException {
+        long start = System.nanoTime();
+        Members members = members(job);
+        long loaded = System.nanoTime();
+        Result result = simulate(members, LoanRules.current(), candidate);
+        result.loadMillis = (loaded - start) / 1_000_000;
+        result.computeMillis = (System.nanoTime() - loaded) / 1_000_000;
+        return result;
+    }
+
+    static Result simulate(Members members, LoanRules current, LoanRules candidate) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, THREADS));
+        try {
+            int slice = Math.max(MIN_SLICE, members.size / (Math.max(1, THREADS) * 4));
+            return new Result(members.size, pool.invoke(new MemberTask(members, current, candidate, 0, members.size, slice)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Cached member figures, reloaded when stale
+    static Members members(JobControl job) throws SQLException {
+        synchronized (LoanRuleSimulator.class) {
+            if (cached != null && TableVersions.isCurrent(SOURCE_TABLES, cached.versions)
+                    && System.nanoTime() - cached.loadedAt < MAX_AGE_NANOS) {
+                return cached;
+            }
+        }
+        long[] versions = TableVersions.snapshot(SOURCE_TABLES);
+        long loadedAt = System.nanoTime();
+        String query = "SELECT " + ShareTotalsCache.TOTAL_EXPRESSION + " FROM members m " +
+                "LEFT JOIN member_share_totals t ON t.MemberID = m.MemberID";
+        int size = 0;
+        double[] contributions = new double[1024];
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            try (PreparedStatement pstmt = job.track(conn.prepareStatement(query))) {
+                pstmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (size == contributions.length) {
+                            contributions = Arrays.copyOf(contributions, size * 2);
+                        }
+                        contributions[size] = rs.getDouble(1);
+                        size++;
+                        if (size % 50_000 == 0) {
+                            job.checkCancelled();
+                            job.progress(size, 0, "Read " + size + " members");
+                        }
+                    }
+                }
+            }
+        }
+        Members members = new Members(size, contributions, versions, loadedAt);
+        synchronized (LoanRuleSimulator.class) {
+            cached = members;
+        }
+        return members;
+    }
+
+    private static final class MemberTask extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+        private final transient Members members;
+        private final transient LoanRules current;
+        private final transient LoanRules candidate;
+        private final int from;
+        private final int to;
+        private final int slice;
+
+        MemberTask(Members members, LoanRules current, LoanRules candidate, int from, int to, int slice) {
+            this.members = members;
+            this.current = current;
+            this.candidate = candidate;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from > slice) {
+                int middle = (from + to) >>> 1;
+                MemberTask right = new MemberTask(members, current, candidate, middle, to, slice);
+                right.fork();
+                Totals totals = new MemberTask(members, current, candidate, from, middle, slice).compute();
+                totals.add(right.join());
+                return totals;
+            }
+            Totals totals = new Totals();
+            for (int i = from; i < to; i++) {
+                double contributions = members.contributions[i];
+                double before = apply(current, contributions, totals.current);
+                double after = apply(candidate, contributions, totals.candidate);
+
+                boolean wasEligible = before >= 0;
+                boolean isEligible = after >= 0;
+                if (isEligible && !wasEligible) {
+                    totals.gained++;
+                } else if (wasEligible && !isEligible) {
+                    totals.lost++;
+                } else if (wasEligible && current.eligibleType(contributions) != candidate.eligibleType(contributions)) {
+                    totals.typeChanged++;
+                }
+                double limitBefore = Math.max(before, 0);
+                double limitAfter = Math.max(after, 0);
+                if (limitAfter > limitBefore) {
+                    totals.limitUp++;
+                } else if (limitAfter < limitBefore) {
+                    totals.limitDown++;
+                }
+            }
+            return totals;
+        }
+
+        // Adds the member to the totals; returns their limit, or -1 when they cannot borrow
+        private static double apply(LoanRules rules, double contributions, SideTotals totals) {
+            int type = rules.eligibleType(contributions);
+            if (type < 0 || !rules.isEligible(contributions)) {
+                return -1;
+            }
+            double limit = contributions * rules.multiplier(type);
+            totals.eligible++;
+            totals.typeCounts[type]++;
+            totals.exposure[type] += limit;
+            totals.interest[type] += limit * rules.interestRate(type);
+            return limit;
+        }
+    }
+}
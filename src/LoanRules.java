@@ -0,0 +1,166 @@
+import java.util.Arrays;
+import java.util.Properties;
+
+// The loan rule table: per loan type the share threshold at which members qualify
+// for it, the borrowing multiplier, the interest rate and the repayment period, plus
+// the contributions a member needs before borrowing at all. LoanManagement (loan
+// form, which checks the chosen type's threshold and limit), MembersSection (eligibility columns) and LoanRuleSimulator all read it from
+// here. Instances are immutable; candidate rules for what-if runs are derived from
+// the current ones with withOverrides.
+public final class LoanRules {
+    public static final String[] TYPES = {"Emergency", "Short", "Normal", "Development"};
+
+    private static final LoanRules CURRENT = new LoanRules(4000,
+            new double[]{0, 6000, 12000, 18000},
+            new double[]{1.0, 2.0, 3.0, 5.0},
+            new double[]{0.3, 0.6, 1.0, 1.4},
+            new int[]{12, 24, 36, 48});
+
+    public final double minContributions;
+    // Per type, indexed like TYPES; minShares must be ascending
+    private final double[] minShares;
+    private final double[] multipliers;
+    private final double[] interestRates;
+    private final int[] repaymentPeriods;
+
+    LoanRules(double minContributions, double[] minShares, double[] multipliers, double[] interestRates, int[] repaymentPeriods) {
+        for (int t = 0; t < TYPES.length; t++) {
+            if (t > 0 && minShares[t] < minShares[t - 1]) {
+                throw new IllegalArgumentException("Share thresholds must be ascending: " + TYPES[t]
+                        + " is below " + TYPES[t - 1] + ".");
+            }
+            if (multipliers[t] <= 0 || interestRates[t] < 0 || repaymentPeriods[t] <= 0) {
+                throw new IllegalArgumentException("Multiplier and repayment period must be positive and the interest rate"
+                        + " not negative for " + TYPES[t] + ".");
+            }
+        }
+        this.minContributions = minContributions;
+        this.minShares = minShares.clone();
+        this.multipliers = multipliers.clone();
+        this.interestRates = interestRates.clone();
+        this.repaymentPeriods = repaymentPeriods.clone();
+    }
+
+    public static LoanRules current() {
+        return CURRENT;
+    }
+
+    // A copy with the given settings replaced. Keys: minContributions, and per type
+    // <Type>.minShares, <Type>.multiplier, <Type>.interestRate, <Type>.repaymentPeriod
+    public LoanRules withOverrides(Properties overrides) {
+        double[] shares = minShares.clone();
+        double[] multiplier = multipliers.clone();
+        double[] rate = interestRates.clone();
+        int[] period = repaymentPeriods.clone();
+        double contributions = minContributions;
+        for (String key : overrides.stringPropertyNames()) {
+            String value = overrides.getProperty(key).trim();
+            try {
+                if (key.equals("minContributions")) {
+                    contributions = Double.parseDouble(value);
+                    continue;
+                }
+                int dot = key.indexOf('.');
+                int t = dot < 0 ? -1 : typeIndex(key.substring(0, dot));
+                String setting = dot < 0 ? key : key.substring(dot + 1);
+                if (t < 0) {
+                    throw new IllegalArgumentException("Unknown loan rule: " + key);
+                }
+                switch (setting) {
+                    case "minShares":
+                        shares[t] = Double.parseDouble(value);
+                        break;
+                    case "multiplier":
+                        multiplier[t] = Double.parseDouble(value);
+                        break;
+                    case "interestRate":
+                        rate[t] = Double.parseDouble(value);
+                        break;
+                    case "repaymentPeriod":
+                        period[t] = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown loan rule: " + key);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Loan rule " + key + " must be a number, got " + value);
+            }
+        }
+        return new LoanRules(contributions, shares, multiplier, rate, period);
+    }
+
+    // Index into TYPES, or -1 for an unknown type
+    public static int typeIndex(String type) {
+        for (int t = 0; t < TYPES.length; t++) {
+            if (TYPES[t].equals(type)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEligible(double totalContributions) {
+        return totalContributions >= minContributions;
+    }
+
+    // The highest type whose share threshold the member meets, or -1 for none
+    public int eligibleType(double shares) {
+        for (int t = TYPES.length - 1; t >= 0; t--) {
+            if (shares >= minShares[t]) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    // Whether the shares meet the type's threshold, as the loan form requires
+    public boolean qualifiesFor(double shares, String type) {
+        int t = typeIndex(type);
+        return t >= 0 && shares >= minShares[t];
+    }
+
+    // Limit for the member's own eligible type
+    public double maxLoanAmount(double shares) {
+        int t = eligibleType(shares);
+        return t < 0 ? 0 : shares * multipliers[t];
+    }
+
+    // Limit for a chosen type; unknown types borrow once their shares
+    public double maxLoanAmount(double shares, String type) {
+        int t = typeIndex(type);
+        return shares * (t < 0 ? 1.0 : multipliers[t]);
+    }
+
+    public double interestRateFactor(String type) {
+        int t = typeIndex(type);
+        return t < 0 ? 0.0 : interestRates[t];
+    }
+
+    public int repaymentPeriod(String type) {
+        int t = typeIndex(type);
+        return t < 0 ? 12 : repaymentPeriods[t];
+    }
+
+    public double minShares(int type) {
+        return minShares[type];
+    }
+
+    public double multiplier(int type) {
+        return multipliers[type];
+    }
+
+    public double interestRate(int type) {
+        return interestRates[type];
+    }
+
+    public int repaymentPeriod(int type) {
+        return repaymentPeriods[type];
+    }
+
+    @Override
+    public String toString() {
+        return "LoanRules{minContributions=" + minContributions + ", minShares=" + Arrays.toString(minShares)
+                + ", multipliers=" + Arrays.toString(multipliers) + ", interestRates=" + Arrays.toString(interestRates)
+                + ", repaymentPeriods=" + Arrays.toString(repaymentPeriods) + "}";
+    }
+}
@@ -0,0 +1,196 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Installment schedules in loan_schedule: one row per monthly installment, written
+// with one JDBC batch when the loan is issued. Repayments are matched to a loan's
+// unsettled installments oldest first, in the repayment's own transaction, and a
+// cleared loan settles all of its installments. An installment is overdue when it
+// is unsettled and its DueDate has passed, which the (Settled, DueDate) index
+// answers directly, so arrears never require replaying repayments.
+//
+// A loan has RepaymentPeriod installments of MonthlyRepayment each, except the last,
+// which takes whatever the others leave of the total so rounding never adds an
+// installment after the term. The first falls due one month after the loan is issued.
+//
+// Usage: LoanSchedule   (creates schedules for active loans that have none; loans
+// carry no issue date, so these cover the outstanding balance from next month on)
+public final class LoanSchedule {
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT = "INSERT INTO loan_schedule (LoanID, InstallmentNo, DueDate, AmountDue) VALUES (?, ?, ?, ?)";
+
+    private LoanSchedule() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        int loans = backfill(JobControl.NONE);
+        System.out.printf("Created schedules for %d loans in %.1f s%n", loans, (System.nanoTime() - start) / 1e9);
+        System.exit(0);
+    }
+
+    // Adds the loan's installments to the caller's batch statement (see INSERT) and returns
+    // how many were added. The caller executes the batch inside its own transaction.
+    static int addInstallments(PreparedStatement pstmtInsert, int loanId, LocalDate issued, double total,
+                               double monthlyRepayment, int installments) throws SQLException {
+        long totalCents = Math.round(total * 100);
+        long installmentCents = Math.round(monthlyRepayment * 100);
+        for (int n = 1; n <= installments; n++) {
+            long cents = n < installments ? installmentCents : totalCents - (installments - 1) * installmentCents;
+            pstmtInsert.setInt(1, loanId);
+            pstmtInsert.setInt(2, n);
+            pstmtInsert.setDate(3, Date.valueOf(issued.plusMonths(n)));
+            pstmtInsert.setDouble(4, cents / 100.0);
+            pstmtInsert.addBatch();
+        }
+        return installments;
+    }
+
+    // Writes the schedule of a loan being issued, on the caller's transaction
+    public static int create(Connection conn, int loanId, LocalDate issued, double total, double monthlyRepayment,
+                             int repaymentPeriod) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(INSERT)) {
+            int count = addInstallments(pstmt, loanId, issued, total, monthlyRepayment, repaymentPeriod);
+            pstmt.executeBatch();
+            return count;
+        }
+    }
+
+    // Matches repayments (LoanID -> amount) to unsettled installments, oldest first, and
+    // settles every installment of the loans in cleared. Runs on the caller's transaction,
+    // after the loans rows have been updated so concurrent repayments of the same loan
+    // are already serialized on the loan's row lock.
+    public static void applyPayments(Connection conn, Map<Integer, Double> payments, Set<Integer> cleared)
+            throws SQLException {
+        List<Integer> open = new ArrayList<>();
+        for (int loanId : payments.keySet()) {
+            if (!cleared.contains(loanId)) {
+                open.add(loanId);
+            }
+        }
+        if (!open.isEmpty()) {
+            matchInstallments(conn, open, payments);
+        }
+        if (!cleared.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "UPDATE loan_schedule SET Settled = TRUE, AmountPaid = AmountDue WHERE LoanID IN (" + placeholders(cleared.size())
+                            + ") AND Settled = FALSE")) {
+                setInts(pstmt, cleared);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static void matchInstallments(Connection conn, List<Integer> loanIds, Map<Integer, Double> payments)
+            throws SQLException {
+        String select = "SELECT LoanID, InstallmentNo, AmountDue, AmountPaid FROM loan_schedule " +
+                "WHERE LoanID IN (" + placeholders(loanIds.size()) + ") AND Settled = FALSE ORDER BY LoanID, InstallmentNo";
+        String update = "UPDATE loan_schedule SET AmountPaid = ?, Settled = ? WHERE LoanID = ? AND InstallmentNo = ?";
+
+        Map<Integer, Double> unapplied = new HashMap<>(payments);
+        try (PreparedStatement pstmtSelect = conn.prepareStatement(select);
+             PreparedStatement pstmtUpdate = conn.prepareStatement(update)) {
+            setInts(pstmtSelect, loanIds);
+            int batched = 0;
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    int loanId = rs.getInt("LoanID");
+                    double left = unapplied.get(loanId);
+                    if (left <= 0) {
+                        continue;
+                    }
+                    double due = rs.getDouble("AmountDue");
+                    double paid = rs.getDouble("AmountPaid");
+                    double applied = Math.min(left, due - paid);
+                    unapplied.put(loanId, left - applied);
+
+                    // Compare in cents so float rounding cannot leave an installment open
+                    boolean settled = Math.round((paid + applied) * 100) >= Math.round(due * 100);
+                    pstmtUpdate.setDouble(1, settled ? due : paid + applied);
+                    pstmtUpdate.setBoolean(2, settled);
+                    pstmtUpdate.setInt(3, loanId);
+                    pstmtUpdate.setInt(4, rs.getInt("InstallmentNo"));
+                    pstmtUpdate.addBatch();
+                    batched++;
+                }
+            }
+            if (batched > 0) {
+                pstmtUpdate.executeBatch();
+            }
+        }
+    }
+
+    // Schedules for active loans that have none (loans issued before loan_schedule existed)
+    public static int backfill(JobControl job) throws SQLException {
+        String select = "SELECT LoanID, OutstandingBalance, MonthlyRepayment FROM loans l " +
+                "WHERE LoanStatus = 'Active' AND NOT EXISTS (SELECT 1 FROM loan_schedule s WHERE s.LoanID = l.LoanID)";
+        List<double[]> loans = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = job.track(conn.createStatement());
+             ResultSet rs = stmt.executeQuery(select)) {
+            while (rs.next()) {
+                loans.add(new double[]{rs.getInt(1), rs.getDouble(2), rs.getDouble(3)});
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT)) {
+            conn.setAutoCommit(false);
+            try {
+                int rows = 0;
+                for (int i = 0; i < loans.size(); i++) {
+                    double[] loan = loans.get(i);
+                    long balanceCents = Math.round(loan[1] * 100);
+                    long monthlyCents = Math.round(loan[2] * 100);
+                    if (balanceCents > 0) {
+                        // As many installments as the balance needs, the last one partial
+                        int installments = monthlyCents > 0 ? (int) ((balanceCents + monthlyCents - 1) / monthlyCents) : 1;
+                        double monthly = monthlyCents > 0 ? loan[2] : loan[1];
+                        rows += addInstallments(pstmt, (int) loan[0], today, loan[1], monthly, installments);
+                    }
+                    if (rows >= BATCH_SIZE || i == loans.size() - 1) {
+                        job.checkCancelled();
+                        pstmt.executeBatch();
+                        conn.commit();
+                        rows = 0;
+                        job.progress(i + 1, loans.size(), "Scheduled " + (i + 1) + " loans");
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        TableVersions.bump(TableVersions.LOAN_SCHEDULE);
+        return loans.size();
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    private static void setInts(PreparedStatement pstmt, Collection<Integer> values) throws SQLException {
+        int index = 1;
+        for (int value : values) {
+            pstmt.setInt(index++, value);
+        }
+    }
+}
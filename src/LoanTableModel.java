@@ -0,0 +1,355 @@
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Lazily paged view of the loans table. A refresh streams only the sort key and
+// LoanID of the matching loans once to learn the row count and where every page
+// starts; pages are then fetched on demand with keyset queries (rows at or after the
+// page's (key, LoanID) ... LIMIT pageSize) as the user scrolls. Filtering and sorting
+// by status, type or member happen in the database, with LoanID breaking ties. Only
+// a bounded window of pages is kept in memory, stored column-wise so cells are boxed
+// only when rendered.
+public class LoanTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    public static final String ALL = "All";
+
+    private static final String[] COLUMNS = {
+            "Loan ID", "Member ID", "Loan Amount", "Loan Type", "Interest Rate",
+            "Repayment Period", "Monthly Repayment", "Outstanding Balance", "Guarantors", "Status"
+    };
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 10;
+
+    private final BusyIndicator busyIndicator;
+
+    private Filter filter = new Filter(ALL, ALL, null, Sort.LOAN_ID, false);
+    private int rowCount = 0;
+    private Boundary[] pageBoundaries = new Boundary[0];
+    private int generation = 0;
+
+    // Access-ordered so the least recently viewed page is evicted first
+    private final LinkedHashMap<Integer, Page> pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> failedPages = new HashSet<>();
+
+    public LoanTableModel(BusyIndicator busyIndicator) {
+        this.busyIndicator = busyIndicator;
+    }
+
+    // Columns the view can be sorted by
+    public enum Sort {
+        LOAN_ID("Loan ID", "LoanID"),
+        STATUS("Status", "LoanStatus"),
+        TYPE("Type", "LoanType"),
+        MEMBER("Member ID", "MemberID");
+
+        private final String label;
+        final String column;
+
+        Sort(String label, String column) {
+            this.label = label;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Server-side filter and sort order for the view
+    public static final class Filter {
+        final String status;
+        final String loanType;
+        final Integer memberId;
+        final Sort sort;
+        final boolean descending;
+
+        public Filter(String status, String loanType, Integer memberId, Sort sort, boolean descending) {
+            this.status = status;
+            this.loanType = loanType;
+            this.memberId = memberId;
+            this.sort = sort;
+            this.descending = descending;
+        }
+
+        String orderClause() {
+            String direction = descending ? " DESC" : " ASC";
+            if (sort == Sort.LOAN_ID) {
+                return " ORDER BY LoanID" + direction;
+            }
+            return " ORDER BY " + sort.column + direction + ", LoanID" + direction;
+        }
+
+        // Rows at or after the boundary in this order. NULL keys sort first ascending
+        // and last descending, as in MySQL.
+        String keysetClause(Boundary boundary) {
+            String idFrom = descending ? " LoanID <= ?" : " LoanID >= ?";
+            if (sort == Sort.LOAN_ID) {
+                return " AND" + idFrom;
+            }
+            String column = sort.column;
+            if (boundary.key == null) {
+                return descending ? " AND " + column + " IS NULL AND" + idFrom
+                        : " AND (" + column + " IS NOT NULL OR" + idFrom + ")";
+            }
+            return " AND (" + column + (descending ? " < ?" : " > ?") + " OR (" + column + " = ? AND" + idFrom + ")"
+                    + (descending ? " OR " + column + " IS NULL)" : ")");
+        }
+
+        void bindKeyset(PreparedStatement pstmt, int index, Boundary boundary) throws SQLException {
+            if (sort != Sort.LOAN_ID && boundary.key != null) {
+                pstmt.setObject(index++, boundary.key);
+                pstmt.setObject(index++, boundary.key);
+            }
+            pstmt.setInt(index, boundary.loanId);
+        }
+
+        String whereClause() {
+            StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+            if (!ALL.equals(status)) {
+                where.append(" AND LoanStatus = ?");
+            }
+            if (!ALL.equals(loanType)) {
+                where.append(" AND LoanType = ?");
+            }
+            if (memberId != null) {
+                where.append(" AND MemberID = ?");
+            }
+            return where.toString();
+        }
+
+        int bind(PreparedStatement pstmt) throws SQLException {
+            int index = 1;
+            if (!ALL.equals(status)) {
+                pstmt.setString(index++, status);
+            }
+            if (!ALL.equals(loanType)) {
+                pstmt.setString(index++, loanType);
+            }
+            if (memberId != null) {
+                pstmt.setInt(index++, memberId);
+            }
+            return index;
+        }
+    }
+
+    // One page of loans held column-wise
+    private static final class Page {
+        int size;
+        final int[] loanIds = new int[PAGE_SIZE];
+        final int[] memberIds = new int[PAGE_SIZE];
+        final double[] loanAmounts = new double[PAGE_SIZE];
+        final String[] loanTypes = new String[PAGE_SIZE];
+        final double[] interestRates = new double[PAGE_SIZE];
+        final int[] repaymentPeriods = new int[PAGE_SIZE];
+        final double[] monthlyRepayments = new double[PAGE_SIZE];
+        final double[] outstandingBalances = new double[PAGE_SIZE];
+        final String[] guarantors = new String[PAGE_SIZE];
+        final String[] statuses = new String[PAGE_SIZE];
+    }
+
+    // Sort key and LoanID of the first row of a page
+    private static final class Boundary {
+        final Object key;
+        final int loanId;
+
+        Boundary(Object key, int loanId) {
+            this.key = key;
+            this.loanId = loanId;
+        }
+    }
+
+    private static final class Index {
+        final int rowCount;
+        final Boundary[] boundaries;
+
+        Index(int rowCount, Boundary[] boundaries) {
+            this.rowCount = rowCount;
+            this.boundaries = boundaries;
+        }
+    }
+
+    // Re-read the row count and page boundaries for the given filter
+    public void refresh(Filter newFilter) {
+        AsyncData.run("loans.index", busyIndicator, task -> loadIndex(task, newFilter), index -> {
+            filter = newFilter;
+            rowCount = index.rowCount;
+            pageBoundaries = index.boundaries;
+            generation++;
+            pages.clear();
+            failedPages.clear();
+            fireTableDataChanged();
+        }, e -> {
+            System.err.println("Failed to load loans: " + e.getMessage());
+            e.printStackTrace();
+        });
+    }
+
+    public void refresh() {
+        refresh(filter);
+    }
+
+    private static Index loadIndex(AsyncData.Task task, Filter filter) throws SQLException {
+        String query = "SELECT LoanID" + (filter.sort == Sort.LOAN_ID ? "" : ", " + filter.sort.column)
+                + " FROM loans" + filter.whereClause() + filter.orderClause();
+        boolean keyed = filter.sort != Sort.LOAN_ID;
+        List<Boundary> boundaries = new ArrayList<>();
+        int count = 0;
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = task.track(conn.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            pstmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+            filter.bind(pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count % PAGE_SIZE == 0) {
+                        task.checkCancelled();
+                        boundaries.add(new Boundary(keyed ? rs.getObject(2) : null, rs.getInt(1)));
+                    }
+                    count++;
+                }
+            }
+        }
+
+        return new Index(count, boundaries.toArray(new Boundary[0]));
+    }
+
+    private void requestPage(int pageIndex) {
+        if (failedPages.contains(pageIndex)) {
+            return;
+        }
+        int requestGeneration = generation;
+        Filter requestFilter = filter;
+        Boundary boundary = pageBoundaries[pageIndex];
+
+        AsyncData.runIfIdle("loans.page." + requestGeneration + "." + pageIndex, busyIndicator,
+                task -> fetchPage(task, requestFilter, boundary), page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    pages.put(pageIndex, page);
+                    int first = pageIndex * PAGE_SIZE;
+                    int last = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                    if (last >= first) {
+                        fireTableRowsUpdated(first, last);
+                    }
+                }, e -> {
+                    if (requestGeneration == generation) {
+                        failedPages.add(pageIndex);
+                    }
+                    System.err.println("Failed to load loans page " + pageIndex + ": " + e.getMessage());
+                    e.printStackTrace();
+                });
+    }
+
+    private static Page fetchPage(AsyncData.Task task, Filter filter, Boundary boundary) throws SQLException {
+        String query = "SELECT LoanID, MemberID, LoanAmount, LoanType, InterestRate, RepaymentPeriod, " +
+                "MonthlyRepayment, OutstandingBalance, GuarantorIDs, LoanStatus FROM loans" + filter.whereClause()
+                + filter.keysetClause(boundary) + filter.orderClause() + " LIMIT " + PAGE_SIZE;
+
+        Page page = new Page();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = task.track(conn.prepareStatement(query))) {
+            int next = filter.bind(pstmt);
+            filter.bindKeyset(pstmt, next, boundary);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next() && page.size < PAGE_SIZE) {
+                    int i = page.size++;
+                    page.loanIds[i] = rs.getInt(1);
+                    page.memberIds[i] = rs.getInt(2);
+                    page.loanAmounts[i] = rs.getDouble(3);
+                    page.loanTypes[i] = rs.getString(4);
+                    page.interestRates[i] = rs.getDouble(5);
+                    page.repaymentPeriods[i] = rs.getInt(6);
+                    page.monthlyRepayments[i] = rs.getDouble(7);
+                    page.outstandingBalances[i] = rs.getDouble(8);
+                    page.guarantors[i] = rs.getString(9);
+                    page.statuses[i] = rs.getString(10);
+                }
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0:
+            case 1:
+            case 5:
+                return Integer.class;
+            case 3:
+            case 8:
+            case 9:
+                return String.class;
+            default:
+                return Double.class;
+        }
+    }
+
+    // Cells of pages that are not loaded yet render blank until the page arrives
+    @Override
+    public Object getValueAt(int row, int column) {
+        int pageIndex = row / PAGE_SIZE;
+        Page page = pages.get(pageIndex);
+        if (page == null) {
+            requestPage(pageIndex);
+            return null;
+        }
+        int i = row % PAGE_SIZE;
+        if (i >= page.size) {
+            return null; // rows deleted since the last refresh
+        }
+        switch (column) {
+            case 0:
+                return page.loanIds[i];
+            case 1:
+                return page.memberIds[i];
+            case 2:
+                return page.loanAmounts[i];
+            case 3:
+                return page.loanTypes[i];
+            case 4:
+                return page.interestRates[i];
+            case 5:
+                return page.repaymentPeriods[i];
+            case 6:
+                return page.monthlyRepayments[i];
+            case 7:
+                return page.outstandingBalances[i];
+            case 8:
+                return page.guarantors[i];
+            default:
+                return page.statuses[i];
+        }
+    }
+}
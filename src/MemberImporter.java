@@ -0,0 +1,201 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Registers new members from a sign-up sheet ("FullName,Age,Shares" per line, header
+// optional). The file is read one line at a time and every line is checked against
+// MemberRules, the same rules as the Add Member form; accepted members are collected
+// into chunks and each chunk is written in its own transaction with one JDBC batch of
+// inserts plus the chunk's registration fees in revenue_monthly. Chunks committed
+// before an error or cancel stay committed; the import then returns what it did with
+// the failure, and the reject file ends with the last line processed so only the
+// lines after it need importing again. Rejected lines go to <file>.rejected.csv.
+public class MemberImporter {
+    private static final int MEMBERS_PER_TRANSACTION = 1000;
+    // Header names accepted for the name, age and shares columns
+    private static final String[][] HEADER_NAMES = {{"fullname", "name"}, {"age"}, {"shares"}};
+
+    private static final class Member {
+        final String name;
+        final int age;
+        final double shares;
+
+        Member(String name, int age, double shares) {
+            this.name = name;
+            this.age = age;
+            this.shares = shares;
+        }
+    }
+
+    public static final class Result {
+        public int linesRead;
+        public int membersAdded;
+        public int chunksCommitted;
+        public double sharesAdded;
+        public long elapsedMillis;
+        public long insertMillis;
+        // Each reject is {line number, reason, original line}
+        public final List<String[]> rejects = new ArrayList<>();
+        public File rejectFile;
+        // Set when the import stopped part way; every line up to processedThroughLine
+        // was added or rejected and nothing after it was added
+        public Exception failure;
+        public int processedThroughLine;
+
+        public double membersPerSecond() {
+            return elapsedMillis == 0 ? membersAdded : membersAdded * 1000.0 / elapsedMillis;
+        }
+
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            if (failure != null) {
+                sb.append("Import stopped: ").append(CsvImport.describe(failure)).append("\n");
+                sb.append("Lines up to ").append(processedThroughLine).append(" were processed; nothing after line ")
+                        .append(processedThroughLine).append(" was added.\n");
+            }
+            sb.append("Lines read: ").append(linesRead).append("\n");
+            sb.append("Members added: ").append(membersAdded).append(" (shares Ksh ")
+                    .append(String.format("%.2f", sharesAdded)).append(")\n");
+            sb.append("Rejected lines: ").append(rejects.size()).append("\n");
+            if (rejectFile != null) {
+                sb.append("Rejects written to: ").append(rejectFile.getAbsolutePath()).append("\n");
+            }
+            sb.append("Time: ").append(elapsedMillis).append(" ms (inserting: ").append(insertMillis).append(" ms in ")
+                    .append(chunksCommitted).append(" transactions), ")
+                    .append(String.format("%.0f", membersPerSecond())).append(" members/s");
+            return sb.toString();
+        }
+    }
+
+    public Result importFile(File sheet, JobControl job) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        int[] columns = {0, 1, 2};
+
+        try (BufferedReader reader = Files.newBufferedReader(sheet.toPath(), StandardCharsets.UTF_8);
+             Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            List<Member> chunk = new ArrayList<>(MEMBERS_PER_TRANSACTION);
+            String raw;
+            int lineNumber = 0;
+            while ((raw = reader.readLine()) != null) {
+                lineNumber++;
+                if (raw.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = CsvImport.split(raw);
+
+                if (lineNumber == 1 && CsvImport.readHeader(fields, columns, HEADER_NAMES)) {
+                    continue;
+                }
+                int nameColumn = columns[0];
+                int ageColumn = columns[1];
+                int sharesColumn = columns[2];
+
+                result.linesRead++;
+                if (fields.length <= Math.max(nameColumn, Math.max(ageColumn, sharesColumn))) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Missing name, age or shares"));
+                    continue;
+                }
+                String name = fields[nameColumn].trim();
+                int age;
+                double shares;
+                try {
+                    age = Integer.parseInt(fields[ageColumn].trim());
+                    shares = Double.parseDouble(fields[sharesColumn].trim());
+                } catch (NumberFormatException e) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Age and shares must be numeric"));
+                    continue;
+                }
+                String invalid = MemberRules.validate(name, age, shares);
+                if (invalid != null) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, invalid));
+                    continue;
+                }
+
+                chunk.add(new Member(name, age, shares));
+                if (chunk.size() == MEMBERS_PER_TRANSACTION) {
+                    job.checkCancelled();
+                    insertChunk(conn, chunk, result);
+                    chunk.clear();
+                    result.processedThroughLine = lineNumber;
+                    job.progress(result.linesRead, 0, "Added " + result.membersAdded + " members");
+                }
+            }
+            if (!chunk.isEmpty()) {
+                job.checkCancelled();
+                insertChunk(conn, chunk, result);
+            }
+            result.processedThroughLine = lineNumber;
+        } catch (SQLException | IOException | RuntimeException e) {
+            result.failure = e;
+        }
+
+        if (!result.rejects.isEmpty() || result.failure != null) {
+            result.rejectFile = CsvImport.writeRejects(sheet, result.rejects, result.failure == null ? null
+                    : CsvImport.stopMarker(result.failure, "nothing after line " + result.processedThroughLine + " was added"));
+        }
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    // One transaction: batch insert the members and add their fees to revenue_monthly,
+    // then bring the in-process indexes and totals up to date
+    private void insertChunk(Connection conn, List<Member> chunk, Result result) throws SQLException {
+        long start = System.nanoTime();
+        String insert = "INSERT INTO members (FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven) VALUES (?, ?, ?, ?, 0, false)";
+        int[] memberIds = new int[chunk.size()];
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmt = conn.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+            for (Member member : chunk) {
+                pstmt.setString(1, member.name);
+                pstmt.setInt(2, member.age);
+                pstmt.setDouble(3, member.shares);
+                pstmt.setDouble(4, MemberRules.REGISTRATION_FEE);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                for (int i = 0; i < memberIds.length; i++) {
+                    if (!keys.next()) {
+                        throw new SQLException("No MemberID generated for imported member " + chunk.get(i).name);
+                    }
+                    memberIds[i] = keys.getInt(1);
+                }
+            }
+            RevenueLedger.record(conn, LocalDate.now(), RevenueLedger.REGISTRATION_FEES,
+                    chunk.size() * MemberRules.REGISTRATION_FEE);
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        TableVersions.bump(TableVersions.MEMBERS, TableVersions.REVENUE_MONTHLY);
+        for (int i = 0; i < memberIds.length; i++) {
+            Member member = chunk.get(i);
+            GuarantorIndex.onMemberAdded(memberIds[i], member.shares);
+            MemberNameIndex.onMemberAdded(memberIds[i], member.name);
+            MemberTotals.onMemberAdded(member.shares, MemberRules.REGISTRATION_FEE);
+            result.sharesAdded += member.shares;
+        }
+        result.membersAdded += chunk.size();
+        result.chunksCommitted++;
+        result.insertMillis += (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,132 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+
+// Modal "find a member by name" dialog used by forms that ask for a Member ID.
+// Results come from MemberNameIndex and update as the user types.
+public class MemberLookupDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_RESULTS = 200;
+    private static final int DEBOUNCE_MILLIS = 150;
+
+    private final JTextField searchField = new JTextField(25);
+    private final DefaultListModel<String> listModel = new DefaultListModel<>();
+    private final JList<String> resultList = new JList<>(listModel);
+    private final JLabel statusLabel = new JLabel(" ");
+    private final BusyIndicator busyIndicator = new BusyIndicator();
+    private final Timer debounce;
+    private int[] resultIds = new int[0];
+    private Integer selectedMemberId;
+
+    private MemberLookupDialog(Window owner, String title) {
+        super(owner, title, ModalityType.APPLICATION_MODAL);
+        setLayout(new BorderLayout(5, 5));
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> search());
+        debounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+        searchField.addActionListener(e -> {
+            if (resultIds.length > 0) {
+                resultList.setSelectedIndex(0);
+                choose();
+            }
+        });
+
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    choose();
+                }
+            }
+        });
+
+        JButton selectButton = new JButton("Select");
+        JButton cancelButton = new JButton("Cancel");
+        selectButton.addActionListener(e -> choose());
+        cancelButton.addActionListener(e -> dispose());
+
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
+        searchPanel.add(new JLabel("Name:"));
+        searchPanel.add(searchField);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 5));
+        buttonPanel.add(statusLabel);
+        buttonPanel.add(selectButton);
+        buttonPanel.add(cancelButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(busyIndicator, BorderLayout.NORTH);
+        southPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        add(searchPanel, BorderLayout.NORTH);
+        add(new JScrollPane(resultList), BorderLayout.CENTER);
+        add(southPanel, BorderLayout.SOUTH);
+        setSize(450, 400);
+        setLocationRelativeTo(owner);
+    }
+
+    // Show the dialog and return the chosen MemberID, or null if nothing was chosen
+    public static Integer pickMember(Component parent, String title) {
+        Window owner = parent == null ? null : SwingUtilities.getWindowAncestor(parent);
+        MemberLookupDialog dialog = new MemberLookupDialog(owner, title);
+        dialog.setVisible(true);
+        return dialog.selectedMemberId;
+    }
+
+    private void search() {
+        String query = searchField.getText().trim();
+        MemberNameIndex index = MemberNameIndex.getIfLoaded();
+        if (index != null) {
+            showResults(index, query);
+            return;
+        }
+        // First search before the startup load finished
+        AsyncData.run("members.lookup", busyIndicator, task -> MemberNameIndex.get(),
+                loaded -> showResults(loaded, searchField.getText().trim()), ex -> {
+                    statusLabel.setText("Member names could not be loaded.");
+                    ex.printStackTrace();
+                });
+    }
+
+    private void showResults(MemberNameIndex index, String query) {
+        resultIds = index.search(query, MAX_RESULTS);
+        listModel.clear();
+        for (int memberId : resultIds) {
+            listModel.addElement(memberId + " - " + index.nameOf(memberId));
+        }
+        if (query.isEmpty()) {
+            statusLabel.setText(" ");
+        } else if (resultIds.length == MAX_RESULTS) {
+            statusLabel.setText("First " + MAX_RESULTS + " matches");
+        } else {
+            statusLabel.setText(resultIds.length + " match(es)");
+        }
+    }
+
+    private void choose() {
+        int selected = resultList.getSelectedIndex();
+        if (selected < 0) {
+            return;
+        }
+        selectedMemberId = resultIds[selected];
+        dispose();
+    }
+}
@@ -0,0 +1,221 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// In-memory index of member names for search-as-you-type. Queries of three or more
+// characters match anywhere in the name (like FullName LIKE '%q%') using trigram
+// posting lists; shorter queries match the start of any word in the name. Loaded
+// once at startup and kept current by addMemberToDatabase; a full members load
+// replaces it so changes from other workstations show up too.
+public final class MemberNameIndex {
+    private static MemberNameIndex current;
+    private static Thread loader;
+
+    // Members by position; posting lists hold positions, in insertion order
+    private int size = 0;
+    private int[] memberIds = new int[1024];
+    private String[] names = new String[1024];
+    private String[] normalized = new String[1024];
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private final Map<Long, Postings> trigrams = new HashMap<>();
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+
+    private static final class Postings {
+        int size;
+        int[] positions = new int[4];
+
+        void add(int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return; // the same trigram or word twice in one name
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+
+    // Start loading the index on a background thread so the first search is instant
+    public static synchronized void loadInBackground() {
+        if (current != null || loader != null) {
+            return;
+        }
+        loader = new Thread(() -> {
+            try {
+                get();
+            } catch (SQLException e) {
+                System.err.println("Failed to load member name index: " + e.getMessage());
+            }
+        }, "member-name-index");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // The index, loading it from the database if it has not been loaded yet
+    public static MemberNameIndex get() throws SQLException {
+        synchronized (MemberNameIndex.class) {
+            if (current != null) {
+                return current;
+            }
+        }
+        MemberNameIndex index = load();
+        synchronized (MemberNameIndex.class) {
+            if (current == null) {
+                current = index;
+            }
+            return current;
+        }
+    }
+
+    // The index if it is ready, or null while it is still loading
+    public static synchronized MemberNameIndex getIfLoaded() {
+        return current;
+    }
+
+    // Replace the index with names that were just read from the members table
+    public static void replace(int[] memberIds, String[] names, int count) {
+        MemberNameIndex index = new MemberNameIndex();
+        for (int i = 0; i < count; i++) {
+            index.add(memberIds[i], names[i]);
+        }
+        synchronized (MemberNameIndex.class) {
+            current = index;
+        }
+    }
+
+    public static void onMemberAdded(int memberId, String name) {
+        MemberNameIndex index = getIfLoaded();
+        if (index != null) {
+            index.add(memberId, name);
+        }
+    }
+
+    private static MemberNameIndex load() throws SQLException {
+        MemberNameIndex index = new MemberNameIndex();
+        String query = "SELECT MemberID, FullName FROM members ORDER BY MemberID";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    index.add(rs.getInt(1), rs.getString(2));
+                }
+            }
+        }
+        return index;
+    }
+
+    // Lower case with runs of whitespace collapsed to one space
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            } else if (sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private synchronized void add(int memberId, String name) {
+        if (positions.containsKey(memberId)) {
+            return;
+        }
+        if (size == memberIds.length) {
+            memberIds = Arrays.copyOf(memberIds, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+            normalized = Arrays.copyOf(normalized, size * 2);
+        }
+        int position = size++;
+        String text = normalize(name);
+        memberIds[position] = memberId;
+        names[position] = name;
+        normalized[position] = text;
+        positions.put(memberId, position);
+
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.computeIfAbsent(trigram(text, i), t -> new Postings()).add(position);
+        }
+        for (String word : text.split(" ")) {
+            if (!word.isEmpty()) {
+                words.computeIfAbsent(word, w -> new Postings()).add(position);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized String nameOf(int memberId) {
+        Integer position = positions.get(memberId);
+        return position == null ? null : names[position];
+    }
+
+    // MemberIDs whose name matches the query; limit <= 0 means all
+    public synchronized int[] search(String query, int limit) {
+        String text = normalize(query);
+        int max = limit <= 0 ? Integer.MAX_VALUE : limit;
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+        return text.length() >= 3 ? searchSubstring(text, max) : searchWordPrefix(text, max);
+    }
+
+    // Candidates come from the rarest trigram in the query and are confirmed against the name
+    private int[] searchSubstring(String text, int max) {
+        Postings rarest = null;
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            Postings postings = trigrams.get(trigram(text, i));
+            if (postings == null) {
+                return new int[0];
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        int[] result = new int[Math.min(max, rarest.size)];
+        int count = 0;
+        for (int i = 0; i < rarest.size && count < result.length; i++) {
+            int position = rarest.positions[i];
+            if (normalized[position].contains(text)) {
+                result[count++] = memberIds[position];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int[] searchWordPrefix(String text, int max) {
+        NavigableMap<String, Postings> matches = words.subMap(text, true, text + Character.MAX_VALUE, false);
+        boolean[] seen = new boolean[size];
+        int[] result = new int[Math.min(max, size)];
+        int count = 0;
+        for (Postings postings : matches.values()) {
+            for (int i = 0; i < postings.size && count < result.length; i++) {
+                int position = postings.positions[i];
+                if (!seen[position]) {
+                    seen[position] = true;
+                    result[count++] = memberIds[position];
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
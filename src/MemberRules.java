@@ -0,0 +1,25 @@
+// Rules a new member must meet, shared by the Add Member form and MemberImporter
+// so both accept exactly the same people.
+public final class MemberRules {
+    public static final int MIN_AGE = 18;
+    public static final int MAX_AGE = 35;
+    public static final double MIN_SHARES = 1000;
+    public static final double REGISTRATION_FEE = 1000;
+
+    private MemberRules() {
+    }
+
+    // Returns why the member cannot be registered, or null if they can
+    public static String validate(String name, int age, double shares) {
+        if (name == null || name.trim().isEmpty()) {
+            return "Please enter a valid name.";
+        }
+        if (age < MIN_AGE || age > MAX_AGE) {
+            return "Age should be between " + MIN_AGE + " and " + MAX_AGE + ".";
+        }
+        if (!Double.isFinite(shares) || shares < MIN_SHARES) {
+            return "Shares should be at least " + (int) MIN_SHARES + ".";
+        }
+        return null;
+    }
+}
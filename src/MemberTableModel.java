@@ -0,0 +1,170 @@
+import javax.swing.table.AbstractTableModel;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+// Members table held column-wise in primitive arrays, filled in one streaming pass
+// over the members query. Loan type and maximum loan amount are not stored; they
+// are derived from the contribution total when a cell is rendered, the same figure
+// the loan form checks (see ShareTotalsCache).
+public class MemberTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {
+            "Member ID", "Name", "Age", "Shares", "Registration Fee", "Outstanding Loan",
+            "Exit Notice", "Contributions", "Loan Type", "Max Loan Amount"
+    };
+
+    private Columns data = new Columns(0);
+
+    // One load of the members table
+    public static final class Columns {
+        int size;
+        int[] memberIds;
+        String[] names;
+        int[] ages;
+        double[] shares;
+        double[] registrationFees;
+        double[] outstandingLoans;
+        boolean[] exitNotices;
+        double[] contributions;
+
+        Columns(int capacity) {
+            memberIds = new int[capacity];
+            names = new String[capacity];
+            ages = new int[capacity];
+            shares = new double[capacity];
+            registrationFees = new double[capacity];
+            outstandingLoans = new double[capacity];
+            exitNotices = new boolean[capacity];
+            contributions = new double[capacity];
+        }
+
+        private void grow() {
+            int capacity = Math.max(1024, memberIds.length * 2);
+            memberIds = Arrays.copyOf(memberIds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            shares = Arrays.copyOf(shares, capacity);
+            registrationFees = Arrays.copyOf(registrationFees, capacity);
+            outstandingLoans = Arrays.copyOf(outstandingLoans, capacity);
+            exitNotices = Arrays.copyOf(exitNotices, capacity);
+            contributions = Arrays.copyOf(contributions, capacity);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int[] memberIds() {
+            return memberIds;
+        }
+
+        public String[] names() {
+            return names;
+        }
+
+        public double[] shares() {
+            return shares;
+        }
+
+        public double[] registrationFees() {
+            return registrationFees;
+        }
+    }
+
+    // Read every member in one forward-only pass; runs off the event thread
+    public static Columns load(JobControl job) throws SQLException {
+        String query = "SELECT m.MemberID, m.FullName, m.Age, m.Shares, m.RegistrationFee, m.OutstandingLoan, m.ExitNoticeGiven, "
+                + ShareTotalsCache.TOTAL_EXPRESSION + " FROM members m "
+                + "LEFT JOIN member_share_totals t ON t.MemberID = m.MemberID";
+        Columns columns = new Columns(1024);
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = job.track(conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            stmt.setFetchSize(DatabaseConnection.streamingFetchSize(conn));
+            try (ResultSet rs = stmt.executeQuery(query)) {
+                while (rs.next()) {
+                    if (columns.size == columns.memberIds.length) {
+                        job.checkCancelled();
+                        columns.grow();
+                    }
+                    int i = columns.size++;
+                    columns.memberIds[i] = rs.getInt(1);
+                    columns.names[i] = rs.getString(2);
+                    columns.ages[i] = rs.getInt(3);
+                    columns.shares[i] = rs.getDouble(4);
+                    columns.registrationFees[i] = rs.getDouble(5);
+                    columns.outstandingLoans[i] = rs.getDouble(6);
+                    columns.exitNotices[i] = rs.getBoolean(7);
+                    columns.contributions[i] = rs.getDouble(8);
+                }
+            }
+        }
+        return columns;
+    }
+
+    // Must be called on the event thread
+    public void setData(Columns columns) {
+        data = columns;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+        return data.size;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (column) {
+            case 0:
+            case 2:
+                return Integer.class;
+            case 1:
+            case 8:
+                return String.class;
+            case 6:
+                return Boolean.class;
+            default:
+                return Double.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Columns columns = data;
+        switch (column) {
+            case 0:
+                return columns.memberIds[row];
+            case 1:
+                return columns.names[row];
+            case 2:
+                return columns.ages[row];
+            case 3:
+                return columns.shares[row];
+            case 4:
+                return columns.registrationFees[row];
+            case 5:
+                return columns.outstandingLoans[row];
+            case 6:
+                return columns.exitNotices[row];
+            case 7:
+                return columns.contributions[row];
+            case 8:
+                return MembersSection.eligibleLoanType(columns.contributions[row]);
+            default:
+                return MembersSection.maxLoanAmount(columns.contributions[row]);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// Group-wide member totals (member count, shares, registration fees) kept in
+// process. Seeded once with a single aggregate query, then adjusted by the code
+// that inserts members or changes shares, so screens read them without touching
+// the members table. Re-seeded after a maximum age because other workstations
+// add members too; a full members load also replaces the totals.
+public final class MemberTotals {
+    private static final long MAX_AGE_NANOS = TimeUnit.MINUTES.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("FEDHA_MEMBER_TOTALS_MAX_AGE_MINUTES", "10")));
+
+    private static Snapshot current;
+    private static long loadedAt;
+    // Bumped on every change so a seed that raced with an insert is not kept
+    private static long generation;
+
+    private MemberTotals() {
+    }
+
+    public static final class Snapshot {
+        public final long memberCount;
+        public final double totalShares;
+        public final double totalRegistrationFees;
+
+        Snapshot(long memberCount, double totalShares, double totalRegistrationFees) {
+            this.memberCount = memberCount;
+            this.totalShares = totalShares;
+            this.totalRegistrationFees = totalRegistrationFees;
+        }
+    }
+
+    public static void loadInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                get();
+            } catch (SQLException e) {
+                System.err.println("Failed to load member totals: " + e.getMessage());
+            }
+        }, "member-totals");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Current totals, seeding them from the database if needed
+    public static Snapshot get() throws SQLException {
+        Snapshot snapshot = getIfLoaded();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        while (true) {
+            long seenGeneration;
+            synchronized (MemberTotals.class) {
+                seenGeneration = generation;
+            }
+            Snapshot seeded = load();
+            synchronized (MemberTotals.class) {
+                if (generation == seenGeneration) {
+                    current = seeded;
+                    loadedAt = System.nanoTime();
+                    return seeded;
+                }
+            }
+        }
+    }
+
+    // Current totals, or null if they have not been seeded or have expired
+    public static synchronized Snapshot getIfLoaded() {
+        if (current == null || System.nanoTime() - loadedAt > MAX_AGE_NANOS) {
+            return null;
+        }
+        return current;
+    }
+
+    // Replace the totals with ones computed from a full read of the members table
+    public static synchronized void replace(long memberCount, double totalShares, double totalRegistrationFees) {
+        generation++;
+        current = new Snapshot(memberCount, totalShares, totalRegistrationFees);
+        loadedAt = System.nanoTime();
+    }
+
+    // Call after the insert has committed
+    public static synchronized void onMemberAdded(double shares, double registrationFee) {
+        generation++;
+        if (current != null) {
+            current = new Snapshot(current.memberCount + 1, current.totalShares + shares,
+                    current.totalRegistrationFees + registrationFee);
+        }
+    }
+
+    // Call after a change to members.Shares has committed
+    public static synchronized void onSharesChanged(double delta) {
+        generation++;
+        if (current != null) {
+            current = new Snapshot(current.memberCount, current.totalShares + delta, current.totalRegistrationFees);
+        }
+    }
+
+    private static Snapshot load() throws SQLException {
+        String query = "SELECT COUNT(*) AS MemberCount, SUM(Shares) AS TotalShares, SUM(RegistrationFee) AS TotalRegistrationFees FROM members";
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            if (rs.next()) {
+                return new Snapshot(rs.getLong("MemberCount"), rs.getDouble("TotalShares"), rs.getDouble("TotalRegistrationFees"));
+            }
+        }
+        return new Snapshot(0, 0, 0);
+    }
+}
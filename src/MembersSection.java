@@ -1,15 +1,21 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
+import java.io.File;
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.BitSet;
 
 public class MembersSection {
     private JFrame frame;
     private JTabbedPane tabbedPane;
-    private DefaultTableModel tableModel;
+    private final MemberTableModel tableModel = new MemberTableModel();
+    private TableRowSorter<MemberTableModel> tableSorter;
+    private JTextField searchField;
     private JLabel totalSharesLabel;
     private JLabel totalRegistrationFeesLabel;
+    private final BusyIndicator busyIndicator = new BusyIndicator();
 
     public MembersSection() {
         frame = new JFrame("Members Section");
@@ -40,6 +46,7 @@ public class MembersSection {
         });
 
         frame.add(tabbedPane, BorderLayout.CENTER);
+        frame.add(busyIndicator, BorderLayout.SOUTH);
         frame.setVisible(true);
     }
 
@@ -53,15 +60,27 @@ public class MembersSection {
 
         JButton formButton = new JButton("Add A Member");
         JButton tableButton = new JButton("View All Members");
+        JButton importButton = new JButton("Import Members");
+        JButton contributionButton = new JButton("Post Contribution");
+        JButton importContributionsButton = new JButton("Import Contributions");
 
         formButton.setToolTipText("Navigate to the form view to add a new member.");
         tableButton.setToolTipText("Navigate to the table view to view and manage members.");
+        importButton.setToolTipText("Register every member in a sign-up sheet (FullName,Age,Shares per line).");
+        contributionButton.setToolTipText("Record a contribution for one member.");
+        importContributionsButton.setToolTipText("Post a file of contributions (MemberID,Amount[,Date] per line).");
 
         formButton.setAlignmentX(Component.CENTER_ALIGNMENT);
         tableButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        importButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        contributionButton.setAlignmentX(Component.CENTER_ALIGNMENT);
+        importContributionsButton.setAlignmentX(Component.CENTER_ALIGNMENT);
 
         formButton.addActionListener(e -> tabbedPane.setSelectedIndex(1));
         tableButton.addActionListener(e -> tabbedPane.setSelectedIndex(2));
+        importButton.addActionListener(e -> importMembers());
+        contributionButton.addActionListener(e -> postContribution());
+        importContributionsButton.addActionListener(e -> importContributions());
 
         panel.add(Box.createVerticalGlue());
         panel.add(title);
@@ -69,6 +88,12 @@ public class MembersSection {
         panel.add(formButton);
         panel.add(Box.createRigidArea(new Dimension(0, 10)));
         panel.add(tableButton);
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(importButton);
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(contributionButton);
+        panel.add(Box.createRigidArea(new Dimension(0, 10)));
+        panel.add(importContributionsButton);
         panel.add(Box.createVerticalGlue());
 
         return panel;
@@ -97,11 +122,6 @@ public class MembersSection {
 
         addButton.addActionListener(e -> {
             String name = nameField.getText().trim();
-            if (name.isEmpty()) {
-                JOptionPane.showMessageDialog(frame, "Please enter a valid name.", "Warning", JOptionPane.WARNING_MESSAGE);
-                return;
-            }
-
             int age;
             try {
                 age = Integer.parseInt(ageField.getText().trim());
@@ -110,11 +130,6 @@ public class MembersSection {
                 return;
             }
 
-            if (age < 18 || age > 35) {
-                JOptionPane.showMessageDialog(frame, "Age should be between 18 and 35.", "Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
             double shares;
             try {
                 shares = Double.parseDouble(sharesField.getText().trim());
@@ -123,21 +138,24 @@ public class MembersSection {
                 return;
             }
 
-            if (shares < 1000) {
-                JOptionPane.showMessageDialog(frame, "Shares should be above 1000.", "Error", JOptionPane.ERROR_MESSAGE);
+            String invalid = MemberRules.validate(name, age, shares);
+            if (invalid != null) {
+                JOptionPane.showMessageDialog(frame, invalid, "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            try {
+            AsyncData.runOnce("members.add", busyIndicator, task -> {
                 addMemberToDatabase(name, age, shares);
+                return null;
+            }, ignored -> {
                 JOptionPane.showMessageDialog(frame, "Member added successfully!");
                 nameField.setText("");
                 ageField.setText("");
                 sharesField.setText("");
-            } catch (Exception ex) {
+            }, ex -> {
                 JOptionPane.showMessageDialog(frame, "An error occurred while adding the member.", "Error", JOptionPane.ERROR_MESSAGE);
                 ex.printStackTrace();
-            }
+            });
         });
 
         backButton.addActionListener(e -> tabbedPane.setSelectedIndex(0));
@@ -186,7 +204,7 @@ public class MembersSection {
 
         JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
         JLabel searchLabel = new JLabel("Search by Name:");
-        JTextField searchField = new JTextField(15);
+        searchField = new JTextField(15);
         JButton searchButton = new JButton("Search");
 
         totalSharesLabel = new JLabel("Total Shares: Ksh 0.00");
@@ -203,10 +221,9 @@ public class MembersSection {
         headerPanel.add(searchPanel, BorderLayout.SOUTH);
         panel.add(headerPanel, BorderLayout.NORTH);
 
-        tableModel = new DefaultTableModel(
-                new String[]{"Member ID", "Name", "Age", "Shares", "Registration Fee", "Outstanding Loan", "Exit Notice", "Loan Type", "Max Loan Amount"}, 0
-        );
         JTable membersTable = new JTable(tableModel);
+        tableSorter = new TableRowSorter<>(tableModel);
+        membersTable.setRowSorter(tableSorter);
         JScrollPane scrollPane = new JScrollPane(membersTable);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
@@ -220,7 +237,29 @@ public class MembersSection {
             loadMembersIntoTable();
             updateSummaryLabels();
         });
-        searchButton.addActionListener(e -> searchMembersByName(searchField.getText().trim()));
+        // Filter the loaded rows as the user types, once typing pauses
+        Timer searchDebounce = new Timer(150, e -> searchMembersByName(searchField.getText().trim()));
+        searchDebounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchDebounce.restart();
+            }
+        });
+        searchButton.addActionListener(e -> {
+            searchDebounce.stop();
+            searchMembersByName(searchField.getText().trim());
+        });
 
         backButton.addActionListener(e -> tabbedPane.setSelectedIndex(0));
 
@@ -234,117 +273,226 @@ public class MembersSection {
     }
 
     private void loadMembersIntoTable() {
-        tableModel.setRowCount(0);
-        ArrayList<Object[]> members = fetchAllMembersFromDatabase();
-        for (Object[] member : members) {
-            tableModel.addRow(member);
-        }
-    }
-
-    private ArrayList<Object[]> fetchAllMembersFromDatabase() {
-        ArrayList<Object[]> members = new ArrayList<>();
-        String query = "SELECT MemberID, FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven FROM members";
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            while (rs.next()) {
-                double shares = rs.getDouble("Shares");
-                Object[] loanData = calculateLoanEligibility(shares);
-                members.add(new Object[]{
-                        rs.getInt("MemberID"),
-                        rs.getString("FullName"),
-                        rs.getInt("Age"),
-                        shares,
-                        rs.getDouble("RegistrationFee"),
-                        rs.getDouble("OutstandingLoan"),
-                        rs.getBoolean("ExitNoticeGiven"),
-                        loanData[0], // Loan Type
-                        loanData[1]  // Max Loan Amount
-                });
+        AsyncData.run("members.load", busyIndicator, task -> {
+            MemberTableModel.Columns members = MemberTableModel.load(task);
+            // Every member has just been read, so refresh the name index and totals too
+            MemberNameIndex.replace(members.memberIds(), members.names(), members.size());
+            double totalShares = 0;
+            double totalFees = 0;
+            for (int i = 0; i < members.size(); i++) {
+                totalShares += members.shares()[i];
+                totalFees += members.registrationFees()[i];
             }
-        } catch (SQLException e) {
+            MemberTotals.replace(members.size(), totalShares, totalFees);
+            return members;
+        }, this::showMembers, ex -> {
             JOptionPane.showMessageDialog(frame, "Error fetching members.", "Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
-        }
-        return members;
+            ex.printStackTrace();
+        });
+    }
+
+    private void showMembers(MemberTableModel.Columns members) {
+        tableModel.setData(members);
+        searchMembersByName(searchField.getText().trim());
+        updateSummaryLabels();
     }
 
-    private Object[] calculateLoanEligibility(double shares) {
-        String loanType = "";
-        double maxLoanAmount = 0;
-
-        if (shares < 6000) {
-            loanType = "Emergency Loan";
-            maxLoanAmount = shares;
-        } else if (shares < 12000) {
-            loanType = "Short Loan";
-            maxLoanAmount = 2 * shares;
-        } else if (shares < 18000) {
-            loanType = "Normal Loan";
-            maxLoanAmount = 3 * shares;
-        } else {
-            loanType = "Development Loan";
-            maxLoanAmount = 5 * shares;
+    // Loan eligibility derived from the contribution total using LoanRules, as in the loan
+    // form; MemberTableModel calls these per rendered cell
+    private static final String[] LOAN_TYPE_LABELS = new String[LoanRules.TYPES.length];
+
+    static {
+        for (int t = 0; t < LOAN_TYPE_LABELS.length; t++) {
+            LOAN_TYPE_LABELS[t] = LoanRules.TYPES[t] + " Loan";
         }
+    }
+
+    static String eligibleLoanType(double contributions) {
+        LoanRules rules = LoanRules.current();
+        int type = rules.eligibleType(contributions);
+        return type < 0 || !rules.isEligible(contributions) ? "None" : LOAN_TYPE_LABELS[type];
+    }
 
-        return new Object[]{loanType, maxLoanAmount};
+    static double maxLoanAmount(double contributions) {
+        LoanRules rules = LoanRules.current();
+        return rules.isEligible(contributions) ? rules.maxLoanAmount(contributions) : 0;
     }
 
-    private void addMemberToDatabase(String name, int age, double shares) throws SQLException {
-        String query = "INSERT INTO members (FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven) VALUES (?, ?, ?, 1000, 0, false)";
+    // Returns the new MemberID. The member and their registration fee in revenue_monthly
+    // are written in one transaction; an uncommitted insert is rolled back when the
+    // connection goes back to the pool.
+    private int addMemberToDatabase(String name, int age, double shares) throws SQLException {
+        String query = "INSERT INTO members (FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven) VALUES (?, ?, ?, ?, 0, false)";
         try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
+             PreparedStatement pstmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            conn.setAutoCommit(false);
             pstmt.setString(1, name);
             pstmt.setInt(2, age);
             pstmt.setDouble(3, shares);
+            pstmt.setDouble(4, MemberRules.REGISTRATION_FEE);
             pstmt.executeUpdate();
+
+            int memberId;
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No MemberID generated for new member.");
+                }
+                memberId = keys.getInt(1);
+            }
+            RevenueLedger.record(conn, java.time.LocalDate.now(), RevenueLedger.REGISTRATION_FEES, MemberRules.REGISTRATION_FEE);
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            TableVersions.bump(TableVersions.MEMBERS, TableVersions.REVENUE_MONTHLY);
+            GuarantorIndex.onMemberAdded(memberId, shares);
+            MemberNameIndex.onMemberAdded(memberId, name);
+            MemberTotals.onMemberAdded(shares, MemberRules.REGISTRATION_FEE);
+            return memberId;
         }
     }
 
-    private void searchMembersByName(String name) {
-        tableModel.setRowCount(0);
-        String query = "SELECT MemberID, FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven FROM members WHERE FullName LIKE ?";
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, "%" + name + "%");
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                double shares = rs.getDouble("Shares");
-                Object[] loanData = calculateLoanEligibility(shares);
-                tableModel.addRow(new Object[]{
-                        rs.getInt("MemberID"),
-                        rs.getString("FullName"),
-                        rs.getInt("Age"),
-                        shares,
-                        rs.getDouble("RegistrationFee"),
-                        rs.getDouble("OutstandingLoan"),
-                        rs.getBoolean("ExitNoticeGiven"),
-                        loanData[0], // Loan Type
-                        loanData[1]  // Max Loan Amount
+    private void importMembers() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select Sign-up Sheet");
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File sheet = fileChooser.getSelectedFile();
+
+        AsyncData.runOnce("members.import", busyIndicator,
+                task -> new MemberImporter().importFile(sheet, task),
+                result -> {
+                    if (result.failure != null) {
+                        result.failure.printStackTrace();
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Member Import Stopped", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Members Imported", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                },
+                ex -> {
+                    JOptionPane.showMessageDialog(frame, "Error importing members: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
                 });
+    }
+
+    private void postContribution() {
+        JTextField memberIdField = new JTextField(10);
+        JTextField amountField = new JTextField(10);
+        JButton findButton = new JButton("Find...");
+        findButton.addActionListener(e -> {
+            Integer memberId = MemberLookupDialog.pickMember(frame, "Find Member");
+            if (memberId != null) {
+                memberIdField.setText(String.valueOf(memberId));
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(frame, "Error searching members.", "Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+        });
+
+        JPanel memberPanel = new JPanel(new BorderLayout(5, 0));
+        memberPanel.add(memberIdField, BorderLayout.CENTER);
+        memberPanel.add(findButton, BorderLayout.EAST);
+        JPanel form = new JPanel(new GridLayout(2, 2, 10, 5));
+        form.add(new JLabel("Member ID:"));
+        form.add(memberPanel);
+        form.add(new JLabel("Amount:"));
+        form.add(amountField);
+        if (JOptionPane.showConfirmDialog(frame, form, "Post Contribution", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
         }
+
+        int memberId;
+        double amount;
+        try {
+            memberId = Integer.parseInt(memberIdField.getText().trim());
+            amount = Double.parseDouble(amountField.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(frame, "Member ID and amount must be valid numbers.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (!Double.isFinite(amount) || amount <= 0) {
+            JOptionPane.showMessageDialog(frame, "Amount must be positive.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        AsyncData.runOnce("members.contribute", busyIndicator,
+                task -> ContributionPosting.post(memberId, amount, java.time.LocalDate.now()),
+                total -> JOptionPane.showMessageDialog(frame, String.format(
+                        "Contribution posted. Member %d has contributed Ksh %.2f in total.", memberId, total)),
+                ex -> {
+                    JOptionPane.showMessageDialog(frame, "Error posting contribution: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                });
     }
 
-    private void updateSummaryLabels() {
-        String query = "SELECT SUM(Shares) AS TotalShares, SUM(RegistrationFee) AS TotalRegistrationFees FROM members";
-        try (Connection conn = DatabaseConnection.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            if (rs.next()) {
-                totalSharesLabel.setText("Total Shares: Ksh " + rs.getDouble("TotalShares"));
-                totalRegistrationFeesLabel.setText("Total Registration Fees: Ksh " + rs.getDouble("TotalRegistrationFees"));
+    private void importContributions() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Select Contributions File");
+        if (fileChooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+
+        AsyncData.runOnce("members.importContributions", busyIndicator,
+                task -> new ContributionPosting().importFile(file, task),
+                result -> {
+                    if (result.failure != null) {
+                        result.failure.printStackTrace();
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Contribution Import Stopped", JOptionPane.WARNING_MESSAGE);
+                    } else {
+                        JOptionPane.showMessageDialog(frame, result.summary(), "Contributions Posted", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                },
+                ex -> {
+                    JOptionPane.showMessageDialog(frame, "Error posting contributions: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                });
+    }
+
+    // Filters the rows already in the table using MemberNameIndex; no query is sent
+    private void searchMembersByName(String name) {
+        if (name.isEmpty()) {
+            tableSorter.setRowFilter(null);
+            return;
+        }
+        MemberNameIndex index = MemberNameIndex.getIfLoaded();
+        if (index == null) {
+            AsyncData.run("members.search", busyIndicator, task -> MemberNameIndex.get(),
+                    loaded -> searchMembersByName(searchField.getText().trim()), ex -> {
+                        JOptionPane.showMessageDialog(frame, "Error searching members.", "Error", JOptionPane.ERROR_MESSAGE);
+                        ex.printStackTrace();
+                    });
+            return;
+        }
+        BitSet matches = new BitSet();
+        for (int memberId : index.search(name, 0)) {
+            matches.set(memberId);
+        }
+        tableSorter.setRowFilter(new RowFilter<MemberTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends MemberTableModel, ? extends Integer> entry) {
+                return matches.get((Integer) entry.getValue(0));
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(frame, "Error fetching summary data.", "Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+        });
+    }
+
+    // Totals come from MemberTotals; only the first call after startup may query
+    private void updateSummaryLabels() {
+        MemberTotals.Snapshot totals = MemberTotals.getIfLoaded();
+        if (totals != null) {
+            showSummary(totals);
+            return;
         }
+        AsyncData.run("members.summary", busyIndicator, task -> MemberTotals.get(), this::showSummary, ex -> {
+            JOptionPane.showMessageDialog(frame, "Error fetching summary data.", "Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        });
+    }
+
+    private void showSummary(MemberTotals.Snapshot totals) {
+        totalSharesLabel.setText("Total Shares: Ksh " + totals.totalShares);
+        totalRegistrationFeesLabel.setText("Total Registration Fees: Ksh " + totals.totalRegistrationFees);
     }
 
     public static void main(String[] args) {
-        new MembersSection();
+        SwingUtilities.invokeLater(MembersSection::new);
     }
 }
@@ -0,0 +1,439 @@
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Portfolio-at-risk and aging of the active loans. Every active loan is streamed
+// once into primitive arrays (with its days past due: the age of its oldest unpaid
+// LoanSchedule installment), then the figures are computed with fork/join over
+// index ranges, each range summing into arrays of its own that are added together
+// on the way back up. Nothing is boxed and nothing is shared between threads.
+//
+// PAR30/60/90 is the outstanding balance of loans more than 30/60/90 days past due
+// as a share of the whole active portfolio. Guarantor exposure splits each loan's
+// balance evenly between its guarantors, as GuarantorIndex does.
+//
+// Threads: FEDHA_ANALYTICS_THREADS (default: available processors).
+public final class PortfolioAnalytics {
+    public static final String NAME = "Portfolio Analytics";
+    public static final String[] COLUMNS = {"Section", "Item", "Loans", "Outstanding Balance", "% of Portfolio", "PAR30 Balance"};
+
+    // LoanRules.TYPES plus "Other" for loans of a type the rules no longer have
+    static final String[] LOAN_TYPES = loanTypes();
+    // Upper bound (days past due, inclusive) of each aging bucket; the last is open-ended
+    static final int[] AGING_LIMITS = {0, 30, 60, 90, 180};
+    static final String[] AGING_NAMES = {"Current", "1-30 days", "31-60 days", "61-90 days", "91-180 days", "Over 180 days"};
+
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_ANALYTICS_THREADS",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    private static final int MIN_SLICE = 16_384;
+    private static final int TOP_GUARANTORS = 20;
+
+    private PortfolioAnalytics() {
+    }
+
+    // The active loans, column by column; guarantor links refer to loans by index
+    static final class Portfolio {
+        int size;
+        int[] loanIds = new int[1024];
+        byte[] types = new byte[1024];
+        double[] balances = new double[1024];
+        int[] daysPastDue = new int[1024];
+        int[] guarantorCounts = new int[1024];
+
+        int links;
+        int[] linkLoans = new int[1024];
+        int[] linkGuarantors = new int[1024];
+        int maxGuarantorId;
+
+        void addLoan(int loanId, String type, double balance, int dpd) {
+            if (size == loanIds.length) {
+                int capacity = size * 2;
+                loanIds = Arrays.copyOf(loanIds, capacity);
+                types = Arrays.copyOf(types, capacity);
+                balances = Arrays.copyOf(balances, capacity);
+                daysPastDue = Arrays.copyOf(daysPastDue, capacity);
+                guarantorCounts = Arrays.copyOf(guarantorCounts, capacity);
+            }
+            loanIds[size] = loanId;
+            types[size] = (byte) typeIndex(type);
+            balances[size] = balance;
+            daysPastDue[size] = dpd;
+            size++;
+        }
+
+        // Loans must have been added in LoanID order
+        void addGuarantor(int loanId, int guarantorId) {
+            int loan = Arrays.binarySearch(loanIds, 0, size, loanId);
+            if (loan < 0) {
+                return;
+            }
+            if (links == linkLoans.length) {
+                linkLoans = Arrays.copyOf(linkLoans, links * 2);
+                linkGuarantors = Arrays.copyOf(linkGuarantors, links * 2);
+            }
+            linkLoans[links] = loan;
+            linkGuarantors[links] = guarantorId;
+            links++;
+            guarantorCounts[loan]++;
+            maxGuarantorId = Math.max(maxGuarantorId, guarantorId);
+        }
+    }
+
+    public static final class Result {
+        public final int loans;
+        public final double portfolioBalance;
+        public final long[] agingCounts;
+        public final double[] agingBalances;
+        public final long[] typeCounts;
+        public final double[] typeBalances;
+        public final double[] typeAtRisk;
+        // Largest guarantor exposures, descending: member ID, loans guaranteed, exposure, exposure at risk
+        public final int[] topGuarantorIds;
+        public final int[] topGuarantorLoans;
+        public final double[] topGuarantorExposure;
+        public final double[] topGuarantorAtRisk;
+        public final int guarantors;
+        public final double guaranteedBalance;
+        public long loadMillis;
+        public long computeMillis;
+
+        Result(int loans, LoanTotals totals, GuarantorTotals guarantorTotals) {
+            this.loans = loans;
+            this.agingCounts = totals.agingCounts;
+            this.agingBalances = totals.agingBalances;
+            this.typeCounts = totals.typeCounts;
+            this.typeBalances = totals.typeBalances;
+            this.typeAtRisk = totals.typeAtRisk;
+            double balance = 0;
+            for (double bucket : agingBalances) {
+                balance += bucket;
+            }
+            this.portfolioBalance = balance;
+
+            double[] exposure = guarantorTotals.exposure;
+            int[] top = new int[Math.min(TOP_GUARANTORS, exposure.length)];
+            int found = 0;
+            int count = 0;
+            double guaranteed = 0;
+            for (int g = 0; g < exposure.length; g++) {
+                if (guarantorTotals.loans[g] == 0) {
+                    continue;
+                }
+                count++;
+                guaranteed += exposure[g];
+                // Insertion into the short descending list of the largest so far
+                if (found < top.length || exposure[g] > exposure[top[found - 1]]) {
+                    int i = found < top.length ? found++ : found - 1;
+                    while (i > 0 && exposure[top[i - 1]] < exposure[g]) {
+                        top[i] = top[i - 1];
+                        i--;
+                    }
+                    top[i] = g;
+                }
+            }
+            this.guarantors = count;
+            this.guaranteedBalance = guaranteed;
+            this.topGuarantorIds = Arrays.copyOf(top, found);
+            this.topGuarantorLoans = new int[found];
+            this.topGuarantorExposure = new double[found];
+            this.topGuarantorAtRisk = new double[found];
+            for (int i = 0; i < found; i++) {
+                topGuarantorLoans[i] = guarantorTotals.loans[top[i]];
+                topGuarantorExposure[i] = exposure[top[i]];
+                topGuarantorAtRisk[i] = guarantorTotals.atRisk[top[i]];
+            }
+        }
+
+        // Balance more than the given number of days past due
+        public double atRisk(int days) {
+            double balance = 0;
+            for (int b = 0; b < AGING_NAMES.length; b++) {
+                if (b > 0 && AGING_LIMITS[b - 1] >= days) {
+                    balance += agingBalances[b];
+                }
+            }
+            return balance;
+        }
+
+        public double par(int days) {
+            return portfolioBalance == 0 ? 0 : atRisk(days) / portfolioBalance;
+        }
+
+        // The figures as table rows, in COLUMNS order
+        public List<Object[]> rows() {
+            List<Object[]> rows = new ArrayList<>();
+            rows.add(row("Portfolio", "Active loans", loans, portfolioBalance, 1.0, atRisk(30)));
+            for (int days : new int[]{30, 60, 90}) {
+                rows.add(row("Portfolio at Risk", "PAR" + days, count(days), atRisk(days), par(days), null));
+            }
+            for (int b = 0; b < AGING_NAMES.length; b++) {
+                rows.add(row("Aging", AGING_NAMES[b], agingCounts[b], agingBalances[b], share(agingBalances[b]),
+                        b > 0 && AGING_LIMITS[b - 1] >= 30 ? agingBalances[b] : 0.0));
+            }
+            for (int t = 0; t < LOAN_TYPES.length; t++) {
+                if (typeCounts[t] > 0) {
+                    rows.add(row("Loan Type", LOAN_TYPES[t], typeCounts[t], typeBalances[t], share(typeBalances[t]), typeAtRisk[t]));
+                }
+            }
+            rows.add(row("Guarantors", "All guarantors (" + guarantors + ")", null, guaranteedBalance, share(guaranteedBalance), null));
+            for (int i = 0; i < topGuarantorIds.length; i++) {
+                rows.add(row("Guarantors", "Member " + topGuarantorIds[i], topGuarantorLoans[i], topGuarantorExposure[i],
+                        share(topGuarantorExposure[i]), topGuarantorAtRisk[i]));
+            }
+            return rows;
+        }
+
+        private long count(int days) {
+            long loans = 0;
+            for (int b = 1; b < AGING_NAMES.length; b++) {
+                if (AGING_LIMITS[b - 1] >= days) {
+                    loans += agingCounts[b];
+                }
+            }
+            return loans;
+        }
+
+        private double share(double balance) {
+            return portfolioBalance == 0 ? 0 : balance / portfolioBalance;
+        }
+
+        private static Object[] row(String section, String item, Number loans, double balance, double share, Double atRisk) {
+            return new Object[]{section, item, loans == null ? "" : loans,
+                    String.format(Locale.ROOT, "%.2f", balance),
+                    String.format(Locale.ROOT, "%.2f%%", share * 100),
+                    atRisk == null ? "" : String.format(Locale.ROOT, "%.2f", atRisk)};
+        }
+
+        public String summary() {
+            return String.format(Locale.ROOT, "%d active loans, Ksh %.2f; PAR30 %.2f%%, PAR60 %.2f%%, PAR90 %.2f%% (read %d ms, computed %d ms)",
+                    loans, portfolioBalance, par(30) * 100, par(60) * 100, par(90) * 100, loadMillis, computeMillis);
+        }
+    }
+
+    public static Result run(JobControl job) throws SQLException {
+        long start = System.nanoTime();
+        Portfolio portfolio = load(job);
+        long loaded = System.nanoTime();
+        Result result = analyze(portfolio);
+        result.loadMillis = (loaded - start) / 1_000_000;
+        result.computeMillis = (System.nanoTime() - loaded) / 1_000_000;
+        return result;
+    }
+
+    // Runs the analytics and writes the rows to a CSV file; returns the result for display
+    public static Result export(File target, boolean gzip, JobControl job) throws SQLException, IOException {
+        Result result = run(job);
+        CsvExporter.writeRows(target, gzip, COLUMNS, result.rows());
+        return result;
+    }
+
+    static Portfolio load(JobControl job) throws SQLException {
+        String loansQuery = "SELECT l.LoanID, l.LoanType, l.OutstandingBalance, o.OldestDue FROM loans l " +
+                "LEFT JOIN (SELECT LoanID, MIN(DueDate) AS OldestDue FROM loan_schedule " +
+                "WHERE Settled = FALSE AND DueDate < ? GROUP BY LoanID) o ON o.LoanID = l.LoanID " +
+                "WHERE l.LoanStatus = 'Active' ORDER BY l.LoanID";
+        String guarantorsQuery = "SELECT g.LoanID, g.GuarantorID FROM loan_guarantors g " +
+                "JOIN loans l ON l.LoanID = g.LoanID WHERE l.LoanStatus = 'Active'";
+
+        LocalDate today = LocalDate.now();
+        long todayEpochDay = today.toEpochDay();
+        Portfolio portfolio = new Portfolio();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            int fetchSize = DatabaseConnection.streamingFetchSize(conn);
+            try (PreparedStatement pstmt = job.track(conn.prepareStatement(loansQuery))) {
+                pstmt.setFetchSize(fetchSize);
+                pstmt.setDate(1, Date.valueOf(today));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Date oldestDue = rs.getDate(4);
+                        int dpd = oldestDue == null ? 0 : (int) (todayEpochDay - oldestDue.toLocalDate().toEpochDay());
+                        portfolio.addLoan(rs.getInt(1), rs.getString(2), rs.getDouble(3), dpd);
+                        if (portfolio.size % 50_000 == 0) {
+                            job.checkCancelled();
+                            job.progress(portfolio.size, 0, "Read " + portfolio.size + " loans");
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = job.track(conn.prepareStatement(guarantorsQuery))) {
+                pstmt.setFetchSize(fetchSize);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        portfolio.addGuarantor(rs.getInt(1), rs.getInt(2));
+                    }
+                }
+            }
+        }
+        return portfolio;
+    }
+
+    static Result analyze(Portfolio portfolio) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, THREADS));
+        try {
+            int slices = Math.max(1, THREADS) * 4;
+            LoanTotals totals = pool.invoke(new LoanTask(portfolio, 0, portfolio.size,
+                    Math.max(MIN_SLICE, portfolio.size / slices)));
+            // Guarantor leaves each allocate arrays over all member IDs, so use fewer, larger slices
+            GuarantorTotals guarantorTotals = pool.invoke(new GuarantorTask(portfolio, 0, portfolio.links,
+                    Math.max(MIN_SLICE * 4, portfolio.links / Math.max(1, THREADS))));
+            return new Result(portfolio.size, totals, guarantorTotals);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String[] loanTypes() {
+        String[] types = Arrays.copyOf(LoanRules.TYPES, LoanRules.TYPES.length + 1);
+        types[types.length - 1] = "Other";
+        return types;
+    }
+
+    static int typeIndex(String type) {
+        int t = LoanRules.typeIndex(type);
+        return t < 0 ? LOAN_TYPES.length - 1 : t;
+    }
+
+    static int agingBucket(int daysPastDue) {
+        for (int b = 0; b < AGING_LIMITS.length; b++) {
+            if (daysPastDue <= AGING_LIMITS[b]) {
+                return b;
+            }
+        }
+        return AGING_LIMITS.length;
+    }
+
+    static final class LoanTotals {
+        final long[] agingCounts = new long[AGING_NAMES.length];
+        final double[] agingBalances = new double[AGING_NAMES.length];
+        final long[] typeCounts = new long[LOAN_TYPES.length];
+        final double[] typeBalances = new double[LOAN_TYPES.length];
+        final double[] typeAtRisk = new double[LOAN_TYPES.length];
+
+        void add(LoanTotals other) {
+            for (int b = 0; b < agingCounts.length; b++) {
+                agingCounts[b] += other.agingCounts[b];
+                agingBalances[b] += other.agingBalances[b];
+            }
+            for (int t = 0; t < typeCounts.length; t++) {
+                typeCounts[t] += other.typeCounts[t];
+                typeBalances[t] += other.typeBalances[t];
+                typeAtRisk[t] += other.typeAtRisk[t];
+            }
+        }
+    }
+
+    private static final class LoanTask extends RecursiveTask<LoanTotals> {
+        private static final long serialVersionUID = 1L;
+        private final transient Portfolio portfolio;
+        private final int from;
+        private final int to;
+        private final int slice;
+
+        LoanTask(Portfolio portfolio, int from, int to, int slice) {
+            this.portfolio = portfolio;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected LoanTotals compute() {
+            if (to - from > slice) {
+                int middle = (from + to) >>> 1;
+                LoanTask right = new LoanTask(portfolio, middle, to, slice);
+                right.fork();
+                LoanTotals totals = new LoanTask(portfolio, from, middle, slice).compute();
+                totals.add(right.join());
+                return totals;
+            }
+            LoanTotals totals = new LoanTotals();
+            for (int i = from; i < to; i++) {
+                double balance = portfolio.balances[i];
+                int dpd = portfolio.daysPastDue[i];
+                int bucket = agingBucket(dpd);
+                int type = portfolio.types[i];
+                totals.agingCounts[bucket]++;
+                totals.agingBalances[bucket] += balance;
+                totals.typeCounts[type]++;
+                totals.typeBalances[type] += balance;
+                if (dpd > 30) {
+                    totals.typeAtRisk[type] += balance;
+                }
+            }
+            return totals;
+        }
+    }
+
+    static final class GuarantorTotals {
+        final double[] exposure;
+        final double[] atRisk;
+        final int[] loans;
+
+        GuarantorTotals(int size) {
+            exposure = new double[size];
+            atRisk = new double[size];
+            loans = new int[size];
+        }
+
+        void add(GuarantorTotals other) {
+            for (int g = 0; g < exposure.length; g++) {
+                exposure[g] += other.exposure[g];
+                atRisk[g] += other.atRisk[g];
+                loans[g] += other.loans[g];
+            }
+        }
+    }
+
+    private static final class GuarantorTask extends RecursiveTask<GuarantorTotals> {
+        private static final long serialVersionUID = 1L;
+        private final transient Portfolio portfolio;
+        private final int from;
+        private final int to;
+        private final int slice;
+
+        GuarantorTask(Portfolio portfolio, int from, int to, int slice) {
+            this.portfolio = portfolio;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+        }
+
+        @Override
+        protected GuarantorTotals compute() {
+            if (to - from > slice) {
+                int middle = (from + to) >>> 1;
+                GuarantorTask right = new GuarantorTask(portfolio, middle, to, slice);
+                right.fork();
+                GuarantorTotals totals = new GuarantorTask(portfolio, from, middle, slice).compute();
+                totals.add(right.join());
+                return totals;
+            }
+            GuarantorTotals totals = new GuarantorTotals(portfolio.maxGuarantorId + 1);
+            for (int i = from; i < to; i++) {
+                int loan = portfolio.linkLoans[i];
+                int guarantor = portfolio.linkGuarantors[i];
+                double share = portfolio.balances[loan] / portfolio.guarantorCounts[loan];
+                totals.exposure[guarantor] += share;
+                totals.loans[guarantor]++;
+                if (portfolio.daysPastDue[loan] > 30) {
+                    totals.atRisk[guarantor] += share;
+                }
+            }
+            return totals;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+// Per-statement timings collected by the connection pool. Every statement run
+// through a pooled connection is recorded against the SQL text and the class that
+// ran it (found from the call stack when the connection is borrowed): execution latency as a log2 histogram, rows returned or updated, and
+// failures. Statements slower than FEDHA_SLOW_QUERY_MS, and failed ones, also go
+// into a bounded ring buffer. Exposed through JMX as fedha:type=QueryStats and
+// shown in DiagnosticsWindow. Set FEDHA_QUERY_STATS=false to turn it off.
+public final class QueryStats {
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("FEDHA_QUERY_STATS"));
+    private static final long SLOW_NANOS = Long.parseLong(System.getenv().getOrDefault("FEDHA_SLOW_QUERY_MS", "500")) * 1_000_000L;
+    private static final int RING_SIZE = 200;
+    private static final int MAX_STATEMENTS = 1000;
+    // Bucket i counts latencies in [2^i, 2^(i+1)) microseconds; bucket 0 also holds < 1 us
+    static final int BUCKETS = 32;
+    // "IN (?, ?, ?)" lists of any length are one statement
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+
+    private static final ConcurrentHashMap<String, StatementStats> STATEMENTS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ConnectionWait> WAITS = new ConcurrentHashMap<>();
+    private static final SlowQuery[] RING = new SlowQuery[RING_SIZE];
+    private static final AtomicLong RING_WRITES = new AtomicLong();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("fedha:type=QueryStats"));
+            } catch (Exception e) {
+                System.err.println("Could not register query statistics with JMX: " + e.getMessage());
+            }
+        }
+    }
+
+    private QueryStats() {
+    }
+
+    // Counters for one SQL text run by one caller
+    public static final class StatementStats {
+        public final String caller;
+        public final String sql;
+        final LongAdder executions = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        StatementStats(String caller, String sql) {
+            this.caller = caller;
+            this.sql = sql;
+        }
+
+        void addRows(long count) {
+            rows.add(count);
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public double getAverageMillis() {
+            long count = executions.sum();
+            return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        // Upper bound of the histogram bucket holding the given percentile
+        public double getPercentileMillis(double percentile) {
+            return QueryStats.percentileMillis(histogram, percentile);
+        }
+    }
+
+    // Time spent waiting for a pooled connection, per caller
+    public static final class ConnectionWait {
+        public final String caller;
+        final LongAdder borrows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        ConnectionWait(String caller) {
+            this.caller = caller;
+        }
+
+        public long getBorrows() {
+            return borrows.sum();
+        }
+
+        public double getAverageMillis() {
+            long count = borrows.sum();
+            return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return QueryStats.percentileMillis(histogram, percentile);
+        }
+    }
+
+    public static final class SlowQuery {
+        public final long timestampMillis;
+        public final String caller;
+        public final String sql;
+        public final double millis;
+        public final String error;
+
+        SlowQuery(long timestampMillis, String caller, String sql, double millis, String error) {
+            this.timestampMillis = timestampMillis;
+            this.caller = caller;
+            this.sql = sql;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    // Who is running SQL on this thread, as "Screen > Class" when the class that runs
+    // the statement is not the screen itself. The screen is the outermost application
+    // class on the stack, stopping at AsyncData so work run on a data worker is
+    // attributed to the screen that queued it.
+    static String currentCaller() {
+        return StackWalker.getInstance().walk(frames -> {
+            String innermost = null;
+            String outermost = null;
+            for (StackWalker.StackFrame frame : (Iterable<StackWalker.StackFrame>) frames::iterator) {
+                String className = frame.getClassName();
+                int nested = className.indexOf('$');
+                if (nested > 0) {
+                    className = className.substring(0, nested);
+                }
+                if (className.equals("AsyncData")) {
+                    break;
+                }
+                if (className.contains(".") || className.equals("ConnectionPool")
+                        || className.equals("DatabaseConnection") || className.equals("QueryStats")) {
+                    continue; // JDK, driver and pool frames
+                }
+                if (innermost == null) {
+                    innermost = className;
+                }
+                outermost = className;
+            }
+            if (innermost == null) {
+                return "unknown";
+            }
+            return innermost.equals(outermost) ? innermost : outermost + " > " + innermost;
+        });
+    }
+
+    static StatementStats statement(String caller, String sql) {
+        String normalized = sql == null ? "(unknown)" : PARAMETER_LIST.matcher(sql.trim()).replaceAll("(?, ...)");
+        String key = caller + '\u0000' + normalized;
+        StatementStats stats = STATEMENTS.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        if (STATEMENTS.size() >= MAX_STATEMENTS) {
+            return STATEMENTS.computeIfAbsent(caller + "\u0000(other)", k -> new StatementStats(caller, "(other statements)"));
+        }
+        return STATEMENTS.computeIfAbsent(key, k -> new StatementStats(caller, normalized));
+    }
+
+    static void recordExecution(StatementStats stats, long nanos, Throwable failure) {
+        stats.executions.increment();
+        stats.totalNanos.add(nanos);
+        stats.histogram.incrementAndGet(bucket(nanos));
+        updateMax(stats.maxNanos, nanos);
+        if (failure != null) {
+            stats.failures.increment();
+        }
+        if (nanos >= SLOW_NANOS || failure != null) {
+            int slot = (int) (RING_WRITES.getAndIncrement() % RING_SIZE);
+            SlowQuery entry = new SlowQuery(System.currentTimeMillis(), stats.caller, stats.sql, nanos / 1e6,
+                    failure == null ? null : failure.getClass().getSimpleName() + ": " + failure.getMessage());
+            synchronized (RING) {
+                RING[slot] = entry;
+            }
+        }
+    }
+
+    static void recordConnectionWait(String caller, long nanos) {
+        ConnectionWait wait = WAITS.computeIfAbsent(caller, ConnectionWait::new);
+        wait.borrows.increment();
+        wait.totalNanos.add(nanos);
+        wait.histogram.incrementAndGet(bucket(nanos));
+        updateMax(wait.maxNanos, nanos);
+    }
+
+    public static List<StatementStats> getStatements() {
+        return new ArrayList<>(STATEMENTS.values());
+    }
+
+    public static List<ConnectionWait> getConnectionWaits() {
+        return new ArrayList<>(WAITS.values());
+    }
+
+    // Newest first
+    public static List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> result = new ArrayList<>();
+        synchronized (RING) {
+            long writes = RING_WRITES.get();
+            for (long i = writes - 1; i >= 0 && i >= writes - RING_SIZE; i--) {
+                SlowQuery entry = RING[(int) (i % RING_SIZE)];
+                if (entry != null) {
+                    result.add(entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+        WAITS.clear();
+        synchronized (RING) {
+            java.util.Arrays.fill(RING, null);
+            RING_WRITES.set(0);
+        }
+    }
+
+    private static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return micros <= 0 ? 0 : Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    private static double percentileMillis(AtomicLongArray histogram, double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += histogram.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram.get(i);
+            if (seen >= threshold) {
+                return (1L << (i + 1)) / 1000.0;
+            }
+        }
+        return (1L << BUCKETS) / 1000.0;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    // JMX view; attribute values are preformatted strings so jconsole can show them as-is
+    public interface QueryStatsMXBean {
+        long getStatementCount();
+
+        long getFailureCount();
+
+        String[] getStatements();
+
+        String[] getConnectionWaits();
+
+        String[] getSlowQueries();
+
+        String getPool();
+
+        void reset();
+    }
+
+    private static final class Bean implements QueryStatsMXBean {
+        @Override
+        public long getStatementCount() {
+            long count = 0;
+            for (StatementStats stats : STATEMENTS.values()) {
+                count += stats.getExecutions();
+            }
+            return count;
+        }
+
+        @Override
+        public long getFailureCount() {
+            long count = 0;
+            for (StatementStats stats : STATEMENTS.values()) {
+                count += stats.getFailures();
+            }
+            return count;
+        }
+
+        @Override
+        public String[] getStatements() {
+            List<StatementStats> statements = QueryStats.getStatements();
+            statements.sort((a, b) -> Double.compare(b.getAverageMillis() * b.getExecutions(), a.getAverageMillis() * a.getExecutions()));
+            String[] lines = new String[statements.size()];
+            for (int i = 0; i < lines.length; i++) {
+                StatementStats s = statements.get(i);
+                lines[i] = String.format(Locale.ROOT, "%s | n=%d fail=%d rows=%d avg=%.2fms p95<=%.2fms max=%.2fms | %s",
+                        s.caller, s.getExecutions(), s.getFailures(), s.getRows(), s.getAverageMillis(),
+                        s.getPercentileMillis(95), s.getMaxMillis(), s.sql);
+            }
+            return lines;
+        }
+
+        @Override
+        public String[] getConnectionWaits() {
+            List<ConnectionWait> waits = QueryStats.getConnectionWaits();
+            String[] lines = new String[waits.size()];
+            for (int i = 0; i < lines.length; i++) {
+                ConnectionWait w = waits.get(i);
+                lines[i] = String.format(Locale.ROOT, "%s | borrows=%d avg=%.2fms p95<=%.2fms max=%.2fms",
+                        w.caller, w.getBorrows(), w.getAverageMillis(), w.getPercentileMillis(95), w.getMaxMillis());
+            }
+            return lines;
+        }
+
+        @Override
+        public String[] getSlowQueries() {
+            List<SlowQuery> slow = QueryStats.getSlowQueries();
+            String[] lines = new String[slow.size()];
+            for (int i = 0; i < lines.length; i++) {
+                SlowQuery q = slow.get(i);
+                lines[i] = String.format(Locale.ROOT, "%tT %s %.1fms%s | %s", q.timestampMillis, q.caller, q.millis,
+                        q.error == null ? "" : " FAILED " + q.error, q.sql);
+            }
+            return lines;
+        }
+
+        @Override
+        public String getPool() {
+            ConnectionPool.Stats stats = DatabaseConnection.getPoolStats();
+            return stats == null ? "not started" : stats.toString();
+        }
+
+        @Override
+        public void reset() {
+            QueryStats.reset();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Posts a batch of loan repayments from a statement file (for example a mobile-money
+// export). The file is parsed up front; loans are then processed in chunks, each
+// chunk in its own transaction: the chunk's loans are read with one IN query, every
+// repayment line is applied in file order, and the new balances are written with a
+// single JDBC batch of version-checked updates (see LoanRepayments), with the
+// amounts matched to each loan's LoanSchedule in the same transaction. Loans a clerk
+// changed in the meantime are re-read and retried. Lines that cannot be posted are
+// reported, not fatal. If the import stops part way (database error, cancel), the
+// chunks already committed stay posted and every line that was not posted goes to
+// the reject file as "Not posted", so only those lines need posting again.
+public class RepaymentImporter {
+    private static final int LOANS_PER_TRANSACTION = 500;
+    // Header names accepted for the loan ID and amount columns
+    private static final String[][] HEADER_NAMES = {{"loanid", "loan"}, {"amount", "repaymentamount"}};
+    private static final String NOT_POSTED = "Not posted";
+
+    // One repayment line from the statement
+    private static final class Line {
+        final int lineNumber;
+        final int loanId;
+        final double amount;
+        final String raw;
+
+        Line(int lineNumber, int loanId, double amount, String raw) {
+            this.lineNumber = lineNumber;
+            this.loanId = loanId;
+            this.amount = amount;
+            this.raw = raw;
+        }
+    }
+
+    public static final class Result {
+        public int linesRead;
+        public int linesPosted;
+        public int loansUpdated;
+        public int loansCleared;
+        // Applied to balances; overpayment beyond a loan's balance is not included
+        public double amountPosted;
+        public long elapsedMillis;
+        // Each reject is {line number, reason, original line}
+        public final List<String[]> rejects = new ArrayList<>();
+        public File rejectFile;
+        // Set when the import stopped part way; the counts cover what was committed
+        public Exception failure;
+        // Loans whose lines were all posted or rejected
+        final Set<Integer> settledLoans = new HashSet<>();
+
+        public String summary() {
+            StringBuilder sb = new StringBuilder();
+            if (failure != null) {
+                sb.append("Import stopped: ").append(CsvImport.describe(failure)).append("\n");
+                sb.append("Lines not posted are listed in the reject file as \"").append(NOT_POSTED).append("\".\n");
+            }
+            sb.append("Lines read: ").append(linesRead).append("\n");
+            sb.append("Repayments posted: ").append(linesPosted).append(" (Ksh ")
+                    .append(String.format("%.2f", amountPosted)).append(")\n");
+            sb.append("Loans updated: ").append(loansUpdated).append(", cleared: ").append(loansCleared).append("\n");
+            sb.append("Rejected lines: ").append(rejects.size()).append("\n");
+            if (rejectFile != null) {
+                sb.append("Rejects written to: ").append(rejectFile.getAbsolutePath()).append("\n");
+            }
+            sb.append("Time: ").append(elapsedMillis).append(" ms");
+            return sb.toString();
+        }
+    }
+
+    public Result importFile(File statement, JobControl job) throws IOException, SQLException {
+        long start = System.nanoTime();
+        Result result = new Result();
+
+        // Group lines by loan, keeping the file order of loans and of lines within a loan
+        LinkedHashMap<Integer, List<Line>> byLoan = new LinkedHashMap<>();
+        for (Line line : parse(statement, result)) {
+            byLoan.computeIfAbsent(line.loanId, id -> new ArrayList<>()).add(line);
+        }
+
+        List<Integer> loanIds = new ArrayList<>(byLoan.keySet());
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            for (int from = 0; from < loanIds.size(); from += LOANS_PER_TRANSACTION) {
+                job.checkCancelled();
+                List<Integer> chunk = loanIds.subList(from, Math.min(loanIds.size(), from + LOANS_PER_TRANSACTION));
+                postChunk(conn, chunk, byLoan, result);
+                job.progress(from + chunk.size(), loanIds.size(), "Posted " + result.linesPosted + " repayments");
+            }
+        } catch (SQLException | RuntimeException e) {
+            result.failure = e;
+            for (int loanId : loanIds) {
+                if (!result.settledLoans.contains(loanId)) {
+                    for (Line line : byLoan.get(loanId)) {
+                        result.rejects.add(CsvImport.reject(line.lineNumber, line.raw, NOT_POSTED));
+                    }
+                }
+            }
+        }
+
+        if (!result.rejects.isEmpty() || result.failure != null) {
+            result.rejectFile = CsvImport.writeRejects(statement, result.rejects, result.failure == null ? null
+                    : CsvImport.stopMarker(result.failure, "only the lines marked " + NOT_POSTED + " need posting again"));
+        }
+        result.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    // Accepts "LoanID,Amount[,...]" lines; a header row naming the columns is optional
+    private List<Line> parse(File statement, Result result) throws IOException {
+        List<Line> lines = new ArrayList<>();
+        int[] columns = {0, 1};
+
+        try (BufferedReader reader = Files.newBufferedReader(statement.toPath(), StandardCharsets.UTF_8)) {
+            String raw;
+            int lineNumber = 0;
+            while ((raw = reader.readLine()) != null) {
+                lineNumber++;
+                if (raw.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = CsvImport.split(raw);
+
+                if (lineNumber == 1 && CsvImport.readHeader(fields, columns, HEADER_NAMES)) {
+                    continue;
+                }
+                int loanColumn = columns[0];
+                int amountColumn = columns[1];
+
+                result.linesRead++;
+                if (fields.length <= Math.max(loanColumn, amountColumn)) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Missing loan ID or amount"));
+                    continue;
+                }
+                int loanId;
+                double amount;
+                try {
+                    loanId = Integer.parseInt(fields[loanColumn].trim());
+                    amount = Double.parseDouble(fields[amountColumn].trim());
+                } catch (NumberFormatException e) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Loan ID and amount must be numeric"));
+                    continue;
+                }
+                if (!Double.isFinite(amount) || amount <= 0) {
+                    result.rejects.add(CsvImport.reject(lineNumber, raw, "Amount must be a positive number"));
+                    continue;
+                }
+                lines.add(new Line(lineNumber, loanId, amount, raw));
+            }
+        }
+        return lines;
+    }
+
+    // Post every loan in the chunk, retrying loans whose row changed underneath us
+    private void postChunk(Connection conn, List<Integer> chunk, Map<Integer, List<Line>> byLoan, Result result)
+            throws SQLException {
+        List<Integer> pending = chunk;
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > LoanRepayments.MAX_ATTEMPTS) {
+                for (int loanId : pending) {
+                    result.settledLoans.add(loanId);
+                    for (Line line : byLoan.get(loanId)) {
+                        result.rejects.add(CsvImport.reject(line.lineNumber, line.raw, "Loan was busy with other updates; post again"));
+                    }
+                }
+                return;
+            }
+            if (attempt > 1) {
+                LoanRepayments.recordConflicts(pending.size());
+                LoanRepayments.backOff(attempt - 1);
+            }
+            pending = postAttempt(conn, pending, byLoan, result);
+        }
+    }
+
+    // The new balance for one loan, held until its conditional update has committed
+    private static final class Posting {
+        final int loanId;
+        final List<String[]> rejects = new ArrayList<>();
+        int applied;
+        double amount;
+        double newBalance;
+        boolean cleared;
+        int version;
+
+        Posting(int loanId) {
+            this.loanId = loanId;
+        }
+    }
+
+    // One optimistic pass over the loans: returns the loans that lost a race. Before
+    // writing, the computed loans are locked and their Version re-read; loans that
+    // changed since the first read are left for the next attempt, and the rest cannot
+    // change until this transaction commits. The conflict check therefore never relies
+    // on the batch's per-row update counts, which drivers may not report (Connector/J
+    // with rewriteBatchedStatements=true).
+    private List<Integer> postAttempt(Connection conn, List<Integer> loanIds, Map<Integer, List<Line>> byLoan, Result result)
+            throws SQLException {
+        StringBuilder select = new StringBuilder("SELECT LoanID, OutstandingBalance, LoanStatus, Version FROM loans WHERE LoanID IN (");
+        for (int i = 0; i < loanIds.size(); i++) {
+            select.append(i == 0 ? "?" : ", ?");
+        }
+        select.append(")");
+        String update = "UPDATE loans SET OutstandingBalance = ?, LoanStatus = ?, Version = Version + 1 " +
+                "WHERE LoanID = ? AND Version = ?";
+
+        List<Posting> computed = new ArrayList<>();
+        List<Posting> batched = new ArrayList<>();
+        List<Integer> conflicted = new ArrayList<>();
+
+        conn.setAutoCommit(false);
+        try (PreparedStatement pstmtSelect = conn.prepareStatement(select.toString());
+             PreparedStatement pstmtUpdate = conn.prepareStatement(update)) {
+            for (int i = 0; i < loanIds.size(); i++) {
+                pstmtSelect.setInt(i + 1, loanIds.get(i));
+            }
+            Map<Integer, Double> balances = new HashMap<>();
+            Map<Integer, String> statuses = new HashMap<>();
+            Map<Integer, Integer> versions = new HashMap<>();
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    int loanId = rs.getInt("LoanID");
+                    balances.put(loanId, rs.getDouble("OutstandingBalance"));
+                    statuses.put(loanId, rs.getString("LoanStatus"));
+                    versions.put(loanId, rs.getInt("Version"));
+                }
+            }
+
+            for (int loanId : loanIds) {
+                List<Line> lines = byLoan.get(loanId);
+                Double balance = balances.get(loanId);
+                if (balance == null) {
+                    result.settledLoans.add(loanId);
+                    for (Line line : lines) {
+                        result.rejects.add(CsvImport.reject(line.lineNumber, line.raw, "Loan ID not found"));
+                    }
+                    continue;
+                }
+
+                Posting posting = new Posting(loanId);
+                boolean isCleared = "Cleared".equals(statuses.get(loanId));
+                double newBalance = balance;
+                for (Line line : lines) {
+                    if (isCleared) {
+                        posting.rejects.add(CsvImport.reject(line.lineNumber, line.raw, "Loan is already cleared"));
+                        continue;
+                    }
+                    double before = newBalance;
+                    newBalance = Math.max(newBalance - line.amount, 0);
+                    isCleared = newBalance <= 0;
+                    posting.applied++;
+                    // Only what reduced the balance; an overpayment beyond it is not collected
+                    posting.amount += before - newBalance;
+                }
+                posting.newBalance = newBalance;
+                posting.cleared = isCleared;
+                if (posting.applied == 0) {
+                    result.settledLoans.add(loanId);
+                    result.rejects.addAll(posting.rejects);
+                    continue;
+                }
+
+                posting.version = versions.get(loanId);
+                computed.add(posting);
+            }
+
+            Map<Integer, Integer> lockedVersions = lockVersions(conn, computed);
+            double collected = 0;
+            Map<Integer, Double> payments = new HashMap<>();
+            Set<Integer> cleared = new HashSet<>();
+            for (Posting posting : computed) {
+                if (!Integer.valueOf(posting.version).equals(lockedVersions.get(posting.loanId))) {
+                    conflicted.add(posting.loanId);
+                    continue;
+                }
+                pstmtUpdate.setDouble(1, posting.newBalance);
+                pstmtUpdate.setString(2, posting.cleared ? "Cleared" : "Active");
+                pstmtUpdate.setInt(3, posting.loanId);
+                pstmtUpdate.setInt(4, posting.version);
+                pstmtUpdate.addBatch();
+                batched.add(posting);
+                collected += posting.amount;
+                payments.put(posting.loanId, posting.amount);
+                if (posting.cleared) {
+                    cleared.add(posting.loanId);
+                }
+            }
+            if (!batched.isEmpty()) {
+                pstmtUpdate.executeBatch();
+            }
+            LoanSchedule.applyPayments(conn, payments, cleared);
+            RevenueLedger.record(conn, LocalDate.now(), RevenueLedger.REPAYMENTS, collected);
+            conn.commit();
+            TableVersions.bump(TableVersions.LOANS, TableVersions.LOAN_SCHEDULE, TableVersions.REVENUE_MONTHLY);
+
+            for (Posting posting : batched) {
+                result.settledLoans.add(posting.loanId);
+                result.rejects.addAll(posting.rejects);
+                result.linesPosted += posting.applied;
+                result.amountPosted += posting.amount;
+                result.loansUpdated++;
+                GuarantorIndex.onBalanceChanged(posting.loanId, posting.newBalance);
+                if (posting.cleared) {
+                    result.loansCleared++;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return conflicted;
+    }
+
+    // Locks the loans' rows in LoanID order (so two imports cannot deadlock) and returns
+    // their current Version
+    private static Map<Integer, Integer> lockVersions(Connection conn, List<Posting> postings) throws SQLException {
+        Map<Integer, Integer> versions = new HashMap<>();
+        if (postings.isEmpty()) {
+            return versions;
+        }
+        StringBuilder select = new StringBuilder("SELECT LoanID, Version FROM loans WHERE LoanID IN (");
+        for (int i = 0; i < postings.size(); i++) {
+            select.append(i == 0 ? "?" : ", ?");
+        }
+        select.append(") ORDER BY LoanID FOR UPDATE");
+        try (PreparedStatement pstmt = conn.prepareStatement(select.toString())) {
+            for (int i = 0; i < postings.size(); i++) {
+                pstmt.setInt(i + 1, postings.get(i).loanId);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    versions.put(rs.getInt(1), rs.getInt(2));
+                }
+            }
+        }
+        return versions;
+    }
+}
@@ -0,0 +1,119 @@
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Report rows kept between runs, keyed by report and parameters. An entry is served
+// only while the tables the report reads are at the TableVersions they had when the
+// query started, and for at most FEDHA_REPORT_CACHE_TTL_SECONDS (default 300) so
+// writes from other processes are eventually picked up. Holds at most
+// FEDHA_REPORT_CACHE_SIZE entries (default 16, least recently used evicted first);
+// results over FEDHA_REPORT_CACHE_MAX_ROWS rows are not cached.
+public final class ReportCache {
+    private static final int MAX_ENTRIES = Integer.parseInt(System.getenv().getOrDefault("FEDHA_REPORT_CACHE_SIZE", "16"));
+    private static final long TTL_MILLIS = Long.parseLong(System.getenv().getOrDefault("FEDHA_REPORT_CACHE_TTL_SECONDS", "300")) * 1000L;
+    private static final int MAX_ROWS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_REPORT_CACHE_MAX_ROWS", "200000"));
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong STALE = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+
+    private ReportCache() {
+    }
+
+    private static final class Entry {
+        final List<Object[]> rows;
+        final String[] tables;
+        final long[] versions;
+        final long loadedAt;
+
+        Entry(List<Object[]> rows, String[] tables, long[] versions, long loadedAt) {
+            this.rows = rows;
+            this.tables = tables;
+            this.versions = versions;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public static final class Stats {
+        public final int entries;
+        public final long hits;
+        public final long misses;
+        public final long stale;
+        public final long evictions;
+
+        Stats(int entries, long hits, long misses, long stale, long evictions) {
+            this.entries = entries;
+            this.hits = hits;
+            this.misses = misses;
+            this.stale = stale;
+            this.evictions = evictions;
+        }
+
+        @Override
+        public String toString() {
+            long lookups = hits + misses;
+            return String.format("entries=%d/%d hits=%d misses=%d (%.0f%% hit) stale=%d evicted=%d",
+                    entries, MAX_ENTRIES, hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups, stale, evictions);
+        }
+    }
+
+    // Rows for a report without parameters, from the cache when still current
+    public static List<Object[]> rows(ReportCatalog.Report report, JobControl job) throws SQLException {
+        List<Object[]> cached = get(report.name);
+        if (cached != null) {
+            return cached;
+        }
+        // Versions are read before the query, so a write that lands while it runs
+        // leaves the entry already stale rather than hiding the change
+        long[] versions = TableVersions.snapshot(report.tables);
+        List<Object[]> rows = ReportCatalog.fetchRows(job, report.query, report.columns.length);
+        put(report.name, rows, report.tables, versions);
+        return rows;
+    }
+
+    // key is the report name, plus any parameters that change its rows
+    public static synchronized List<Object[]> get(String key) {
+        Entry entry = ENTRIES.get(key);
+        if (entry != null && (System.currentTimeMillis() - entry.loadedAt > TTL_MILLIS
+                || !TableVersions.isCurrent(entry.tables, entry.versions))) {
+            ENTRIES.remove(key);
+            STALE.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+        HITS.incrementAndGet();
+        return entry.rows;
+    }
+
+    // Callers must not modify rows after handing them over
+    public static synchronized void put(String key, List<Object[]> rows, String[] tables, long[] versions) {
+        if (MAX_ENTRIES <= 0 || rows.size() > MAX_ROWS || !TableVersions.isCurrent(tables, versions)) {
+            return;
+        }
+        ENTRIES.put(key, new Entry(rows, tables, versions, System.currentTimeMillis()));
+        Iterator<Map.Entry<String, Entry>> it = ENTRIES.entrySet().iterator();
+        while (ENTRIES.size() > MAX_ENTRIES && it.hasNext()) {
+            it.next();
+            it.remove();
+            EVICTIONS.incrementAndGet();
+        }
+    }
+
+    public static synchronized void clear() {
+        ENTRIES.clear();
+    }
+
+    public static synchronized Stats getStats() {
+        return new Stats(ENTRIES.size(), HITS.get(), MISSES.get(), STALE.get(), EVICTIONS.get());
+    }
+}
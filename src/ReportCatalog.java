@@ -0,0 +1,122 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// The reports offered by ReportsForm, with the query and column headings behind
+// each one. Shared by on-screen generation and file export.
+public final class ReportCatalog {
+    public static final Report MEMBERS = new Report("Members Report",
+            "SELECT MemberID, FullName, Age, Shares FROM members",
+            new String[]{"Member ID", "Name", "Age", "Shares"},
+            TableVersions.MEMBERS);
+
+    public static final Report LOANS = new Report("Loans Report",
+            "SELECT LoanID, MemberID, LoanAmount, InterestRate, RepaymentPeriod, OutstandingBalance FROM loans",
+            new String[]{"Loan ID", "Member ID", "Loan Amount", "Interest Rate", "Repayment Period", "Outstanding Balance"},
+            TableVersions.LOANS);
+
+    public static final Report FIXED_DEPOSITS = new Report("Fixed Deposit Report",
+            "SELECT DepositID, TotalSavings, MonthlyInterest, AccumulatedInterest, LastUpdated FROM fixed_deposits",
+            new String[]{"Deposit ID", "Total Savings", "Monthly Interest", "Accumulated Interest", "Last Updated"},
+            TableVersions.FIXED_DEPOSITS);
+
+    public static final Report DIVIDENDS = new Report("Dividends Report",
+            "SELECT MemberID, FullName, Shares, Dividends FROM members",
+            new String[]{"Member ID", "Name", "Shares", "Dividends"},
+            TableVersions.MEMBERS);
+
+    public static final Report REVENUE = new Report("Revenue Report",
+            "SELECT " +
+                    "(SELECT SUM(LoanAmount * InterestRate / 100) FROM loans) AS LoanRevenue, " +
+                    "(SELECT SUM(MonthlyInterest) FROM fixed_deposits) AS FixedDepositRevenue",
+            new String[]{"Loan Revenue", "Fixed Deposit Revenue"},
+            TableVersions.LOANS, TableVersions.FIXED_DEPOSITS);
+
+    public static final Report EXITING_MEMBERS = new Report("Exiting Members Report",
+            "SELECT MemberID, FullName, Shares, OutstandingLoan, ExitNoticeGiven FROM members WHERE ExitNoticeGiven = true",
+            new String[]{"Member ID", "Name", "Shares", "Outstanding Loan", "Exit Notice Given"},
+            TableVersions.MEMBERS);
+
+    // Only unsettled installments past their due date are read (idx_loan_schedule_overdue)
+    public static final Report ARREARS = new Report("Arrears Report",
+            "SELECT s.LoanID, l.MemberID, m.FullName, COUNT(*) AS InstallmentsOverdue, " +
+                    "SUM(s.AmountDue - s.AmountPaid) AS AmountOverdue, MIN(s.DueDate) AS OldestDueDate " +
+                    "FROM loan_schedule s JOIN loans l ON l.LoanID = s.LoanID JOIN members m ON m.MemberID = l.MemberID " +
+                    "WHERE s.Settled = FALSE AND s.DueDate < CURRENT_DATE " +
+                    "GROUP BY s.LoanID, l.MemberID, m.FullName ORDER BY AmountOverdue DESC",
+            new String[]{"Loan ID", "Member ID", "Name", "Installments Overdue", "Amount Overdue", "Oldest Due Date"},
+            TableVersions.LOAN_SCHEDULE, TableVersions.LOANS, TableVersions.MEMBERS);
+
+    private static final List<Report> ALL = Collections.unmodifiableList(Arrays.asList(
+            MEMBERS, LOANS, FIXED_DEPOSITS, DIVIDENDS, REVENUE, EXITING_MEMBERS, ARREARS));
+
+    private ReportCatalog() {
+    }
+
+    public static final class Report {
+        public final String name;
+        public final String query;
+        public final String[] columns;
+        // Tables the query reads, for ReportCache invalidation
+        public final String[] tables;
+
+        Report(String name, String query, String[] columns, String... tables) {
+            this.name = name;
+            this.query = query;
+            this.columns = columns;
+            this.tables = tables;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static List<Report> all() {
+        return ALL;
+    }
+
+    // Look up a report by its display name; null when there is no such report
+    public static Report find(String name) {
+        for (Report report : ALL) {
+            if (report.name.equals(name)) {
+                return report;
+            }
+        }
+        return null;
+    }
+
+    public static String[] names() {
+        String[] names = new String[ALL.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = ALL.get(i).name;
+        }
+        return names;
+    }
+
+    // Run a report query and materialize its rows; shared by ReportsForm (through
+    // ReportCache), Benchmarks and BatchRunner
+    public static List<Object[]> fetchRows(JobControl job, String query, int columnCount) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = job.track(conn.createStatement());
+             ResultSet rs = stmt.executeQuery(query)) {
+
+            while (rs.next()) {
+                job.checkCancelled();
+                Object[] row = new Object[columnCount];
+                for (int i = 1; i <= columnCount; i++) {
+                    row[i - 1] = rs.getObject(i);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
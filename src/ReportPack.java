@@ -0,0 +1,145 @@
+import java.io.File;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Month-end pack: every report in ReportCatalog exported to its own CSV file in one
+// directory. The reports run at the same time, each streaming through CsvExporter
+// on its own pooled connection, so the pack takes about as long as the slowest
+// report. A report that fails does not stop the others; its file is not written and
+// the failure is listed in the summary.
+public final class ReportPack {
+    // One connection per report; the pool (FEDHA_DB_POOL_SIZE) needs room for them plus the
+    // screens. By default every report gets a thread; FEDHA_REPORT_PACK_THREADS can only lower that.
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("FEDHA_REPORT_PACK_THREADS",
+            String.valueOf(Integer.MAX_VALUE)));
+
+    private ReportPack() {
+    }
+
+    public static final class ReportResult {
+        public final ReportCatalog.Report report;
+        public final File file;
+        public final long rows;
+        public final long millis;
+        public final Exception error;
+
+        ReportResult(ReportCatalog.Report report, File file, long rows, long millis, Exception error) {
+            this.report = report;
+            this.file = file;
+            this.rows = rows;
+            this.millis = millis;
+            this.error = error;
+        }
+    }
+
+    public static final class Result {
+        public final List<ReportResult> reports;
+        public final long millis;
+
+        Result(List<ReportResult> reports, long millis) {
+            this.reports = reports;
+            this.millis = millis;
+        }
+
+        public int failures() {
+            int failures = 0;
+            for (ReportResult report : reports) {
+                if (report.error != null) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+        // One line per report, then the total
+        public String summary() {
+            StringBuilder summary = new StringBuilder();
+            long slowest = 0;
+            long sum = 0;
+            for (ReportResult r : reports) {
+                if (r.error == null) {
+                    summary.append(String.format(Locale.ROOT, "%-24s %8d rows %7.2f s  %s%n",
+                            r.report.name, r.rows, r.millis / 1000.0, r.file.getName()));
+                } else {
+                    summary.append(String.format(Locale.ROOT, "%-24s FAILED after %.2f s: %s%n",
+                            r.report.name, r.millis / 1000.0, r.error.getMessage()));
+                }
+                slowest = Math.max(slowest, r.millis);
+                sum += r.millis;
+            }
+            summary.append(String.format(Locale.ROOT, "%d of %d reports written in %.2f s (slowest %.2f s, %.2f s if run one by one)",
+                    reports.size() - failures(), reports.size(), millis / 1000.0, slowest / 1000.0, sum / 1000.0));
+            return summary.toString();
+        }
+    }
+
+    public static Result generate(File directory, boolean gzip, JobControl job) throws InterruptedException {
+        List<ReportCatalog.Report> reports = ReportCatalog.all();
+        String prefix = LocalDate.now() + "_";
+        long start = System.nanoTime();
+        AtomicInteger finished = new AtomicInteger();
+        job.progress(0, reports.size(), "Generating " + reports.size() + " reports...");
+
+        // Per-report progress would fight over the one progress bar; report whole reports instead
+        JobControl reportJob = new JobControl() {
+            @Override
+            public void checkCancelled() {
+                job.checkCancelled();
+            }
+
+            @Override
+            public <S extends Statement> S track(S statement) {
+                return job.track(statement);
+            }
+
+            @Override
+            public void progress(long done, long total, String message) {
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(THREADS, reports.size())), r -> {
+            Thread t = new Thread(r, "report-pack");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<ReportResult>> futures = new ArrayList<>();
+            for (ReportCatalog.Report report : reports) {
+                File file = new File(directory, prefix + report.name.replace(' ', '_') + (gzip ? ".csv.gz" : ".csv"));
+                futures.add(executor.submit(() -> {
+                    long reportStart = System.nanoTime();
+                    ReportResult result;
+                    try {
+                        long rows = CsvExporter.export(report.query, report.columns, file, gzip, reportJob);
+                        result = new ReportResult(report, file, rows, (System.nanoTime() - reportStart) / 1_000_000, null);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        result = new ReportResult(report, file, 0, (System.nanoTime() - reportStart) / 1_000_000, e);
+                    }
+                    job.progress(finished.incrementAndGet(), reports.size(), report.name + " done");
+                    return result;
+                }));
+            }
+            List<ReportResult> results = new ArrayList<>();
+            for (Future<ReportResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            job.checkCancelled();
+            return new Result(results, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,14 +1,12 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.sql.*;
-import java.util.ArrayList;
+import java.io.File;
 
 public class ReportsForm {
     private JFrame frame;
     private DefaultTableModel tableModel;
+    private final BusyIndicator busyIndicator = new BusyIndicator();
 
     public ReportsForm() {
         try {
@@ -26,15 +24,17 @@ public class ReportsForm {
             // Report Selection Section
             JPanel selectionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
             JLabel reportLabel = new JLabel("Select Report:");
-            JComboBox<String> reportComboBox = new JComboBox<>(new String[]{
-                    "Members Report", "Loans Report", "Fixed Deposit Report",
-                    "Dividends Report", "Revenue Report", "Exiting Members Report"
-            });
+            JComboBox<String> reportComboBox = new JComboBox<>(ReportCatalog.names());
+            reportComboBox.addItem(PortfolioAnalytics.NAME);
             JButton generateButton = new JButton("Generate Report");
+            JButton packButton = new JButton("Generate All Reports...");
+            packButton.setToolTipText("Export every report to its own CSV file in a chosen folder, running the queries in parallel.");
 
             selectionPanel.add(reportLabel);
             selectionPanel.add(reportComboBox);
             selectionPanel.add(generateButton);
+            selectionPanel.add(packButton);
+            selectionPanel.add(busyIndicator);
 
             JPanel headerPanel = new JPanel(new BorderLayout());
             headerPanel.add(titleLabel, BorderLayout.NORTH);
@@ -49,10 +49,20 @@ public class ReportsForm {
 
             // Button Section
             JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
+            JCheckBox gzipCheckBox = new JCheckBox("Compress (gzip)");
             JButton exportButton = new JButton("Export to CSV");
+            JButton dividendsButton = new JButton("Run Dividends...");
+            JButton loanRulesButton = new JButton("Loan Rule What-If...");
             JButton backButton = new JButton("Back");
 
+            exportButton.setToolTipText("Export the selected report straight from the database to a CSV file.");
+            dividendsButton.setToolTipText("Share out the year's surplus as member dividends, or preview the result to a CSV file.");
+            loanRulesButton.setToolTipText("Try different loan multipliers, thresholds and rates against the whole membership.");
+
+            buttonPanel.add(gzipCheckBox);
             buttonPanel.add(exportButton);
+            buttonPanel.add(dividendsButton);
+            buttonPanel.add(loanRulesButton);
             buttonPanel.add(backButton);
             frame.add(buttonPanel, BorderLayout.SOUTH);
 
@@ -68,20 +78,14 @@ public class ReportsForm {
                 }
             });
 
-            exportButton.addActionListener(e -> {
-                try {
-                    if (tableModel.getRowCount() == 0) {
-                        JOptionPane.showMessageDialog(frame, "No data to export. Generate a report first.",
-                                "Information", JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        exportToCSV();
-                    }
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(frame, "Error exporting to CSV: " + ex.getMessage(),
-                            "Error", JOptionPane.ERROR_MESSAGE);
-                    ex.printStackTrace();
-                }
-            });
+            exportButton.addActionListener(e ->
+                    exportToCSV((String) reportComboBox.getSelectedItem(), gzipCheckBox.isSelected()));
+
+            packButton.addActionListener(e -> generateAllReports(gzipCheckBox.isSelected()));
+
+            dividendsButton.addActionListener(e -> runDividends());
+
+            loanRulesButton.addActionListener(e -> new LoanRuleDialog(frame));
 
             backButton.addActionListener(e -> frame.dispose());
 
@@ -98,29 +102,18 @@ public class ReportsForm {
         try {
             tableModel.setRowCount(0); // Clear the table
             tableModel.setColumnCount(0); // Clear the columns
+            frame.setTitle("Reports");
 
-            switch (reportType) {
-                case "Members Report":
-                    generateMembersReport();
-                    break;
-                case "Loans Report":
-                    generateLoansReport();
-                    break;
-                case "Fixed Deposit Report":
-                    generateFixedDepositReport();
-                    break;
-                case "Dividends Report":
-                    generateDividendsReport();
-                    break;
-                case "Revenue Report":
-                    generateRevenueReport();
-                    break;
-                case "Exiting Members Report":
-                    generateExitingMembersReport();
-                    break;
-                default:
-                    JOptionPane.showMessageDialog(frame, "Invalid report selection.", "Error", JOptionPane.ERROR_MESSAGE);
+            if (PortfolioAnalytics.NAME.equals(reportType)) {
+                populateAnalytics();
+                return;
             }
+            ReportCatalog.Report report = ReportCatalog.find(reportType);
+            if (report == null) {
+                JOptionPane.showMessageDialog(frame, "Invalid report selection.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            populateTable(report);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(frame, "Error generating report: " + e.getMessage(),
                     "Error", JOptionPane.ERROR_MESSAGE);
@@ -128,106 +121,168 @@ public class ReportsForm {
         }
     }
 
-    // Generate Members Report
-    private void generateMembersReport() {
-        String query = "SELECT MemberID, FullName, Age, Shares FROM members";
-        populateTableFromQuery(query, new String[]{"Member ID", "Name", "Age", "Shares"});
-    }
-
-    // Generate Loans Report
-    private void generateLoansReport() {
-        String query = "SELECT LoanID, MemberID, LoanAmount, InterestRate, RepaymentPeriod, OutstandingBalance FROM loans";
-        populateTableFromQuery(query, new String[]{"Loan ID", "Member ID", "Loan Amount", "Interest Rate", "Repayment Period", "Outstanding Balance"});
-    }
-
-    // Generate Fixed Deposit Report
-    private void generateFixedDepositReport() {
-        String query = "SELECT DepositID, TotalSavings, MonthlyInterest, AccumulatedInterest, LastUpdated FROM fixed_deposits";
-        populateTableFromQuery(query, new String[]{"Deposit ID", "Total Savings", "Monthly Interest", "Accumulated Interest", "Last Updated"});
-    }
-
-    // Generate Dividends Report
-    private void generateDividendsReport() {
-        String query = "SELECT MemberID, FullName, Shares, Dividends FROM members";
-        populateTableFromQuery(query, new String[]{"Member ID", "Name", "Shares", "Dividends"});
-    }
-
-    // Generate Revenue Report
-    private void generateRevenueReport() {
-        String query = "SELECT " +
-                "(SELECT SUM(LoanAmount * InterestRate / 100) FROM loans) AS LoanRevenue, " +
-                "(SELECT SUM(MonthlyInterest) FROM fixed_deposits) AS FixedDepositRevenue";
-        populateTableFromQuery(query, new String[]{"Loan Revenue", "Fixed Deposit Revenue"});
-    }
-
-    // Generate Exiting Members Report
-    private void generateExitingMembersReport() {
-        String query = "SELECT MemberID, FullName, Shares, OutstandingLoan, ExitNoticeGiven FROM members WHERE ExitNoticeGiven = true";
-        populateTableFromQuery(query, new String[]{"Member ID", "Name", "Shares", "Outstanding Loan", "Exit Notice Given"});
+    // Populate the table with a report's rows, from ReportCache when nothing it reads
+    // has changed. A query runs on a data worker; selecting another report while one
+    // is loading cancels the earlier one.
+    private void populateTable(ReportCatalog.Report report) {
+        AsyncData.run("reports.generate", busyIndicator, task -> ReportCache.rows(report, task), rows -> {
+            tableModel.setColumnIdentifiers(report.columns);
+            for (Object[] row : rows) {
+                tableModel.addRow(row);
+            }
+        }, e -> {
+            JOptionPane.showMessageDialog(frame, "Error populating report table: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        });
     }
 
-    // Populate the table from a database query
-    private void populateTableFromQuery(String query, String[] columnNames) {
-        try {
-            tableModel.setColumnIdentifiers(columnNames);
-
-            try (Connection conn = DatabaseConnection.getConnection();
-                 Statement stmt = conn.createStatement();
-                 ResultSet rs = stmt.executeQuery(query)) {
-
-                while (rs.next()) {
-                    ArrayList<Object> row = new ArrayList<>();
-                    for (int i = 1; i <= columnNames.length; i++) {
-                        row.add(rs.getObject(i));
-                    }
-                    tableModel.addRow(row.toArray());
-                }
-
-            } catch (SQLException e) {
-                JOptionPane.showMessageDialog(frame, "Error populating report table: " + e.getMessage(),
-                        "Error", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
+    // Portfolio analytics are computed rather than queried, so they bypass ReportCache
+    private void populateAnalytics() {
+        AsyncData.run("reports.generate", busyIndicator, PortfolioAnalytics::run, result -> {
+            tableModel.setColumnIdentifiers(PortfolioAnalytics.COLUMNS);
+            for (Object[] row : result.rows()) {
+                tableModel.addRow(row);
             }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(frame, "Unexpected error while populating table: " + e.getMessage(),
+            frame.setTitle("Reports - " + result.summary());
+        }, e -> {
+            JOptionPane.showMessageDialog(frame, "Error computing portfolio analytics: " + e.getMessage(),
                     "Error", JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
-        }
+        });
     }
 
-    // Export the table to a CSV file
-    private void exportToCSV() throws IOException {
+    // Export the selected report to a CSV file, streaming rows from the database
+    private void exportToCSV(String reportType, boolean gzip) {
+        ReportCatalog.Report report = ReportCatalog.find(reportType);
+        boolean analytics = PortfolioAnalytics.NAME.equals(reportType);
+        if (report == null && !analytics) {
+            JOptionPane.showMessageDialog(frame, "Invalid report selection.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Report as CSV");
+        if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File target = CsvExporter.targetFile(fileChooser.getSelectedFile(), gzip);
+
+        if (analytics) {
+            AsyncData.runOnce("reports.export", busyIndicator,
+                    task -> PortfolioAnalytics.export(target, gzip, task),
+                    result -> JOptionPane.showMessageDialog(frame, "Portfolio analytics exported to " + target.getName()
+                            + "\n" + result.summary()),
+                    e -> {
+                        JOptionPane.showMessageDialog(frame, "Error exporting file: " + e.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                        e.printStackTrace();
+                    });
+            return;
+        }
+        AsyncData.runOnce("reports.export", busyIndicator,
+                task -> CsvExporter.export(report.query, report.columns, target, gzip, task),
+                rows -> JOptionPane.showMessageDialog(frame, "Report exported successfully! (" + rows + " rows to " + target.getName() + ")"),
+                e -> {
+                    JOptionPane.showMessageDialog(frame, "Error exporting file: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    e.printStackTrace();
+                });
+    }
 
-        try {
-            int userSelection = fileChooser.showSaveDialog(frame);
-
-            if (userSelection == JFileChooser.APPROVE_OPTION) {
-                String filePath = fileChooser.getSelectedFile().getAbsolutePath();
-
-                try (FileWriter writer = new FileWriter(filePath + ".csv")) {
-                    for (int i = 0; i < tableModel.getColumnCount(); i++) {
-                        writer.write(tableModel.getColumnName(i) + (i < tableModel.getColumnCount() - 1 ? "," : "\n"));
-                    }
+    // Export every report into one folder at once; see ReportPack
+    private void generateAllReports(boolean gzip) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Choose a Folder for the Report Pack");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File directory = fileChooser.getSelectedFile();
+
+        AsyncData.runOnce("reports.pack", busyIndicator,
+                task -> ReportPack.generate(directory, gzip, task),
+                result -> {
+                    JTextArea summary = new JTextArea(result.summary());
+                    summary.setEditable(false);
+                    summary.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+                    JOptionPane.showMessageDialog(frame, new JScrollPane(summary), "Report Pack",
+                            result.failures() == 0 ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                },
+                e -> {
+                    JOptionPane.showMessageDialog(frame, "Error generating reports: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    e.printStackTrace();
+                });
+    }
 
-                    for (int i = 0; i < tableModel.getRowCount(); i++) {
-                        for (int j = 0; j < tableModel.getColumnCount(); j++) {
-                            writer.write(tableModel.getValueAt(i, j).toString() + (j < tableModel.getColumnCount() - 1 ? "," : "\n"));
-                        }
-                    }
+    // Ask for the year, surplus and weighting, then run (or preview) the dividend computation
+    private void runDividends() {
+        JTextField yearField = new JTextField(String.valueOf(java.time.LocalDate.now().getYear() - 1));
+        JTextField surplusField = new JTextField();
+        JComboBox<DividendRun.Weighting> weightingComboBox = new JComboBox<>(DividendRun.Weighting.values());
+        weightingComboBox.setSelectedItem(DividendRun.Weighting.SHARE_MONTHS);
+        JCheckBox dryRunCheckBox = new JCheckBox("Dry run (write a preview CSV only)", true);
+
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
+        panel.add(new JLabel("Year:"));
+        panel.add(yearField);
+        panel.add(new JLabel("Distributable Surplus:"));
+        panel.add(surplusField);
+        panel.add(new JLabel("Weighting:"));
+        panel.add(weightingComboBox);
+        panel.add(new JLabel());
+        panel.add(dryRunCheckBox);
+
+        if (JOptionPane.showConfirmDialog(frame, panel, "Dividend Run", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
 
-                    JOptionPane.showMessageDialog(frame, "Report exported successfully!");
-                }
+        int year;
+        double surplus;
+        try {
+            year = Integer.parseInt(yearField.getText().trim());
+            surplus = Double.parseDouble(surplusField.getText().trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(frame, "Please enter a valid year and surplus amount.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (surplus <= 0) {
+            JOptionPane.showMessageDialog(frame, "Distributable surplus must be greater than zero.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        DividendRun.Weighting weighting = (DividendRun.Weighting) weightingComboBox.getSelectedItem();
+        boolean dryRun = dryRunCheckBox.isSelected();
+
+        File preview = null;
+        if (dryRun) {
+            JFileChooser fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Save Dividend Preview as CSV");
+            fileChooser.setSelectedFile(new File("Dividends-" + year + "-preview.csv"));
+            if (fileChooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
             }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(frame, "Error exporting file: " + e.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
-            throw e;
+            preview = CsvExporter.targetFile(fileChooser.getSelectedFile(), false);
+        } else if (JOptionPane.showConfirmDialog(frame,
+                "This overwrites every member's dividend with the " + year + " figures. Continue?",
+                "Confirm Dividend Run", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return;
         }
+
+        File previewFile = preview;
+        AsyncData.runOnce("reports.dividends", busyIndicator,
+                task -> DividendRun.run(year, surplus, weighting, dryRun, previewFile, task),
+                result -> JOptionPane.showMessageDialog(frame, result.toString()
+                        + (previewFile == null ? "" : "\nPreview written to " + previewFile.getName())),
+                ex -> {
+                    JOptionPane.showMessageDialog(frame, "Error running dividends: " + ex.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                });
     }
 
     public static void main(String[] args) {
-        new ReportsForm();
+        SwingUtilities.invokeLater(ReportsForm::new);
     }
 }
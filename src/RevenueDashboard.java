@@ -0,0 +1,128 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+
+// Revenue by month from RevenueLedger. Shows the cached figures straight away and
+// checks every few seconds whether they are out of date; a refresh reads only the
+// small revenue_monthly table. Repayments are cash collected against loans, not
+// revenue, so they are listed but left out of the totals.
+public class RevenueDashboard {
+    private static final int REFRESH_MILLIS = 5000;
+    private static final String[] HEADINGS = {"Loan Interest", "Deposit Interest", "Registration Fees", "Repayments Collected"};
+
+    private final JFrame frame;
+    private final BusyIndicator busyIndicator = new BusyIndicator();
+    private final DefaultTableModel tableModel;
+    private final JLabel[] totalValues = new JLabel[HEADINGS.length + 1];
+    private final Timer timer = new Timer(REFRESH_MILLIS, e -> refresh());
+    private RevenueLedger.Snapshot shown;
+
+    public RevenueDashboard() {
+        frame = new JFrame("Revenue");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.setSize(800, 550);
+        frame.setLayout(new BorderLayout());
+        frame.setLocationRelativeTo(null);
+
+        JLabel titleLabel = new JLabel("Revenue", SwingConstants.CENTER);
+        titleLabel.setFont(new Font("Arial", Font.BOLD, 20));
+        titleLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 10, 0));
+
+        // Totals across all months
+        JPanel totalsPanel = new JPanel(new GridLayout(HEADINGS.length + 1, 2, 10, 5));
+        totalsPanel.setBorder(BorderFactory.createEmptyBorder(0, 20, 10, 20));
+        for (int i = 0; i <= HEADINGS.length; i++) {
+            JLabel label = new JLabel(i < HEADINGS.length ? HEADINGS[i] + ":" : "Total Revenue:");
+            label.setHorizontalAlignment(SwingConstants.RIGHT);
+            totalValues[i] = new JLabel("-");
+            totalsPanel.add(label);
+            totalsPanel.add(totalValues[i]);
+        }
+        totalValues[HEADINGS.length].setFont(totalValues[HEADINGS.length].getFont().deriveFont(Font.BOLD));
+
+        JPanel headerPanel = new JPanel(new BorderLayout());
+        headerPanel.add(titleLabel, BorderLayout.NORTH);
+        headerPanel.add(totalsPanel, BorderLayout.CENTER);
+        frame.add(headerPanel, BorderLayout.NORTH);
+
+        // Month by month, newest first
+        tableModel = new DefaultTableModel(new String[]{"Month", HEADINGS[0], HEADINGS[1], HEADINGS[2], HEADINGS[3], "Total"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        frame.add(new JScrollPane(new JTable(tableModel)), BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(e -> frame.dispose());
+        buttonPanel.add(closeButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        southPanel.add(busyIndicator, BorderLayout.SOUTH);
+        frame.add(southPanel, BorderLayout.SOUTH);
+
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                timer.stop();
+            }
+        });
+
+        RevenueLedger.Snapshot cached = RevenueLedger.getLastLoaded();
+        if (cached != null) {
+            show(cached);
+        }
+        frame.setVisible(true);
+        refresh();
+        timer.start();
+    }
+
+    // Show the cached figures if they are current, otherwise reload them in the background
+    private void refresh() {
+        RevenueLedger.Snapshot current = RevenueLedger.getIfCurrent();
+        if (current != null) {
+            if (current != shown) {
+                show(current);
+            }
+            return;
+        }
+        AsyncData.run("revenue.load", busyIndicator, task -> RevenueLedger.get(), this::show, e -> {
+            timer.stop(); // one error dialog, not one per tick
+            JOptionPane.showMessageDialog(frame, "Error loading revenue: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        });
+    }
+
+    private void show(RevenueLedger.Snapshot snapshot) {
+        shown = snapshot;
+        double grandTotal = 0;
+        for (int c = 0; c < HEADINGS.length; c++) {
+            double total = snapshot.total(c);
+            totalValues[c].setText(String.format("Ksh %.2f", total));
+            if (c != RevenueLedger.REPAYMENTS) {
+                grandTotal += total;
+            }
+        }
+        totalValues[HEADINGS.length].setText(String.format("Ksh %.2f", grandTotal));
+
+        tableModel.setRowCount(0);
+        for (int i = snapshot.periods.length - 1; i >= 0; i--) {
+            Object[] row = new Object[HEADINGS.length + 2];
+            row[0] = snapshot.periods[i].toString();
+            double monthTotal = 0;
+            for (int c = 0; c < HEADINGS.length; c++) {
+                double amount = snapshot.amounts[c][i];
+                row[c + 1] = String.format("%.2f", amount);
+                if (c != RevenueLedger.REPAYMENTS) {
+                    monthTotal += amount;
+                }
+            }
+            row[HEADINGS.length + 1] = String.format("%.2f", monthTotal);
+            tableModel.addRow(row);
+        }
+    }
+}
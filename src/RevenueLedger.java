@@ -0,0 +1,150 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Revenue by month, maintained as it happens. Each revenue event adds its amount
+// to revenue_monthly inside the event's own transaction, so the dashboard never has
+// to scan loans or fixed_deposits:
+//   - LoanInterest: interest on a loan, booked when the loan is issued
+//   - DepositInterest: MonthlyInterest of each fixed deposit update
+//   - RegistrationFees: fee paid by each new member
+//   - Repayments: amounts applied to loan balances (not overpayments)
+// A month is spread over SLOTS rows and each event adds to a random one, so
+// concurrent repayments, loan issues and registrations rarely wait on the same row
+// lock; reads sum a month's slots. The table is small (a few rows per month) and is
+// cached in process; the
+// cache is dropped when TableVersions.REVENUE_MONTHLY moves and after
+// FEDHA_REVENUE_MAX_AGE_SECONDS (default 60) for events from other workstations.
+public final class RevenueLedger {
+    public static final int LOAN_INTEREST = 0;
+    public static final int DEPOSIT_INTEREST = 1;
+    public static final int REGISTRATION_FEES = 2;
+    public static final int REPAYMENTS = 3;
+    static final String[] COLUMNS = {"LoanInterest", "DepositInterest", "RegistrationFees", "Repayments"};
+    static final int SLOTS = 16;
+
+    private static final long MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("FEDHA_REVENUE_MAX_AGE_SECONDS", "60")));
+
+    private static Snapshot current;
+    private static long loadedAt;
+
+    private RevenueLedger() {
+    }
+
+    // Months in order, oldest first; amounts[column][i] belongs to periods[i]
+    public static final class Snapshot {
+        public final YearMonth[] periods;
+        public final double[][] amounts;
+        final long version;
+
+        Snapshot(YearMonth[] periods, double[][] amounts, long version) {
+            this.periods = periods;
+            this.amounts = amounts;
+            this.version = version;
+        }
+
+        public double total(int column) {
+            double total = 0;
+            for (double amount : amounts[column]) {
+                total += amount;
+            }
+            return total;
+        }
+    }
+
+    // Add an amount to the month of the given date. Runs on the caller's connection so
+    // it commits or rolls back with the event; bump TableVersions.REVENUE_MONTHLY after committing.
+    public static void record(Connection conn, LocalDate date, int column, double amount) throws SQLException {
+        if (amount == 0) {
+            return;
+        }
+        String name = COLUMNS[column];
+        String query = "INSERT INTO revenue_monthly (Period, Slot, " + name + ") VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE " + name + " = " + name + " + VALUES(" + name + ")";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setDate(1, Date.valueOf(date.withDayOfMonth(1)));
+            pstmt.setInt(2, ThreadLocalRandom.current().nextInt(SLOTS));
+            pstmt.setDouble(3, amount);
+            pstmt.executeUpdate();
+        }
+    }
+
+    public static void loadInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                get();
+            } catch (SQLException e) {
+                System.err.println("Failed to load revenue: " + e.getMessage());
+            }
+        }, "revenue-ledger");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Current figures, reading revenue_monthly if the cached copy is out of date
+    public static Snapshot get() throws SQLException {
+        Snapshot snapshot = getIfCurrent();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long version = TableVersions.get(TableVersions.REVENUE_MONTHLY);
+        Snapshot loaded = load(version);
+        synchronized (RevenueLedger.class) {
+            if (current == null || current.version <= version) {
+                current = loaded;
+                loadedAt = System.nanoTime();
+            }
+        }
+        return loaded;
+    }
+
+    // Cached figures, or null when there are none or they are out of date
+    public static synchronized Snapshot getIfCurrent() {
+        if (current == null || current.version != TableVersions.get(TableVersions.REVENUE_MONTHLY)
+                || System.nanoTime() - loadedAt > MAX_AGE_NANOS) {
+            return null;
+        }
+        return current;
+    }
+
+    // Last figures loaded, however old; null before the first load
+    public static synchronized Snapshot getLastLoaded() {
+        return current;
+    }
+
+    private static Snapshot load(long version) throws SQLException {
+        String query = "SELECT Period, SUM(LoanInterest), SUM(DepositInterest), SUM(RegistrationFees), SUM(Repayments) " +
+                "FROM revenue_monthly GROUP BY Period ORDER BY Period";
+        List<YearMonth> periods = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                periods.add(YearMonth.from(rs.getDate(1).toLocalDate()));
+                double[] row = new double[COLUMNS.length];
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = rs.getDouble(c + 2);
+                }
+                rows.add(row);
+            }
+        }
+        double[][] amounts = new double[COLUMNS.length][periods.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            for (int c = 0; c < COLUMNS.length; c++) {
+                amounts[c][i] = rows.get(i)[c];
+            }
+        }
+        return new Snapshot(periods.toArray(new YearMonth[0]), amounts, version);
+    }
+}
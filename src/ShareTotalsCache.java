@@ -0,0 +1,94 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process cache of each member's total contributions, read from the running totals
+// in member_share_totals (maintained by ContributionPosting), so loan eligibility and
+// limit checks never aggregate the contributions table. Code that posts contributions
+// must call recordContribution (or invalidate) after committing. Entries also expire
+// after a TTL because other workstations post contributions too. A member with no
+// totals row (contributions loaded outside the app) falls back to summing their
+// contributions until ContributionPosting --rebuild-totals is run.
+public final class ShareTotalsCache {
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(
+            Long.parseLong(System.getenv().getOrDefault("FEDHA_SHARE_CACHE_TTL_SECONDS", "300")));
+
+    private static final ConcurrentHashMap<Integer, Entry> TOTALS = new ConcurrentHashMap<>();
+    // Bumped on every write so a load that raced with a write does not cache a stale total
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private ShareTotalsCache() {
+    }
+
+    private static final class Entry {
+        final double total;
+        final long loadedAt;
+
+        Entry(double total, long loadedAt) {
+            this.total = total;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    // Total contributions for the member, loading it from the database on a miss
+    public static double getTotal(int memberId) throws SQLException {
+        long now = System.nanoTime();
+        Entry entry = TOTALS.get(memberId);
+        if (entry != null && now - entry.loadedAt < TTL_NANOS) {
+            return entry.total;
+        }
+
+        long generation = GENERATION.get();
+        double total = loadTotal(memberId);
+        if (GENERATION.get() == generation) {
+            TOTALS.put(memberId, new Entry(total, now));
+        }
+        return total;
+    }
+
+    // Apply a committed contribution to the cached total without re-aggregating
+    public static void recordContribution(int memberId, double amount) {
+        GENERATION.incrementAndGet();
+        TOTALS.computeIfPresent(memberId, (id, entry) -> new Entry(entry.total + amount, entry.loadedAt));
+    }
+
+    public static void invalidate(int memberId) {
+        GENERATION.incrementAndGet();
+        TOTALS.remove(memberId);
+    }
+
+    public static void invalidateAll() {
+        GENERATION.incrementAndGet();
+        TOTALS.clear();
+    }
+
+    // The same total inside a query over members m LEFT JOIN member_share_totals t, with
+    // the same fallback to contributions for members without a totals row
+    static final String TOTAL_EXPRESSION = "COALESCE(t.TotalContributions, "
+            + "(SELECT SUM(c.ContributionAmount) FROM contributions c WHERE c.MemberID = m.MemberID), 0)";
+
+    private static double loadTotal(int memberId) throws SQLException {
+        String query = "SELECT TotalContributions FROM member_share_totals WHERE MemberID = ?";
+        String fallback = "SELECT COALESCE(SUM(ContributionAmount), 0) FROM contributions WHERE MemberID = ?";
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+                pstmt.setInt(1, memberId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getDouble("TotalContributions");
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(fallback)) {
+                pstmt.setInt(1, memberId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getDouble(1) : 0.0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+// Fills members, contributions, loans and fixed_deposits with deterministic
+// synthetic data for load tests and benchmarks. The same seed and sizes always
+// produce the same rows. Rows are written with JDBC batches through
+// DatabaseConnection, so FEDHA_DB_URL can point it at a local embedded database
+// (for example H2 in MySQL mode) instead of the production server.
+//
+// Usage: SyntheticDataGenerator [--members N] [--contributions N] [--loans N]
+//        [--deposit-months N] [--seed N] [--batch N] [--create-schema]
+public class SyntheticDataGenerator {
+    private static final String[] FIRST_NAMES = {
+            "Brian", "Faith", "Kevin", "Mercy", "Dennis", "Grace", "Samuel", "Esther", "Peter", "Joy",
+            "James", "Ann", "Collins", "Sharon", "Victor", "Winnie", "Felix", "Purity", "Allan", "Lucy"
+    };
+    private static final String[] LAST_NAMES = {
+            "Otieno", "Wanjiru", "Kamau", "Mutua", "Ochieng", "Njoroge", "Kiptoo", "Achieng", "Mwangi", "Wambui",
+            "Kariuki", "Chebet", "Omondi", "Nyambura", "Kimani", "Akinyi", "Korir", "Waweru", "Odhiambo", "Muthoni"
+    };
+
+    private final int members;
+    private final long contributions;
+    private final int loans;
+    private final int depositMonths;
+    private final long seed;
+    private final int batchSize;
+    private final LocalDate today = LocalDate.of(2026, 1, 1); // fixed so runs are reproducible
+
+    public SyntheticDataGenerator(int members, long contributions, int loans, int depositMonths, long seed, int batchSize) {
+        this.members = members;
+        this.contributions = contributions;
+        this.loans = loans;
+        this.depositMonths = depositMonths;
+        this.seed = seed;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int members = 10_000;
+        long contributions = 250_000;
+        int loans = 5_000;
+        int depositMonths = 36;
+        long seed = 42;
+        int batchSize = 1_000;
+        boolean createSchema = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--members":
+                    members = Integer.parseInt(args[++i]);
+                    break;
+                case "--contributions":
+                    contributions = Long.parseLong(args[++i]);
+                    break;
+                case "--loans":
+                    loans = Integer.parseInt(args[++i]);
+                    break;
+                case "--deposit-months":
+                    depositMonths = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--batch":
+                    batchSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--create-schema":
+                    createSchema = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available.");
+            }
+            if (createSchema) {
+                createSchema(conn);
+            }
+            new SyntheticDataGenerator(members, contributions, loans, depositMonths, seed, batchSize).generate(conn);
+        }
+    }
+
+    // Base tables as the application uses them, plus the columns and tables from sql/
+    public static void createSchema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS members (" +
+                    "MemberID INT AUTO_INCREMENT PRIMARY KEY, FullName VARCHAR(100) NOT NULL, Age INT, " +
+                    "Shares DOUBLE DEFAULT 0, RegistrationFee DOUBLE DEFAULT 0, OutstandingLoan DOUBLE DEFAULT 0, " +
+                    "ExitNoticeGiven BOOLEAN DEFAULT FALSE, Dividends DOUBLE DEFAULT 0)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS contributions (" +
+                    "ContributionID INT AUTO_INCREMENT PRIMARY KEY, MemberID INT NOT NULL, " +
+                    "ContributionAmount DOUBLE NOT NULL, ContributionDate DATE, " +
+                    "INDEX idx_contributions_member (MemberID))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS loans (" +
+                    "LoanID INT AUTO_INCREMENT PRIMARY KEY, MemberID INT NOT NULL, LoanAmount DOUBLE, LoanType VARCHAR(20), " +
+                    "InterestRate DOUBLE, RepaymentPeriod INT, MonthlyRepayment DOUBLE, OutstandingBalance DOUBLE, " +
+                    "GuarantorIDs VARCHAR(255), LoanStatus VARCHAR(20), Version INT NOT NULL DEFAULT 0, " +
+                    "INDEX idx_loans_member (MemberID), INDEX idx_loans_status (LoanStatus), INDEX idx_loans_type (LoanType))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS loan_guarantors (" +
+                    "LoanID INT NOT NULL, GuarantorID INT NOT NULL, PRIMARY KEY (LoanID, GuarantorID), " +
+                    "INDEX idx_loan_guarantors_guarantor (GuarantorID))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS fixed_deposits (" +
+                    "DepositID INT AUTO_INCREMENT PRIMARY KEY, TotalSavings DOUBLE, MonthlyInterest DOUBLE, " +
+                    "AccumulatedInterest DOUBLE, LastUpdated DATE)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS member_interest_accruals (" +
+                    "MemberID INT NOT NULL, Period DATE NOT NULL, Balance DOUBLE NOT NULL, Interest DOUBLE NOT NULL, " +
+                    "PRIMARY KEY (MemberID, Period), INDEX idx_member_interest_accruals_period (Period))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS loan_schedule (" +
+                    "LoanID INT NOT NULL, InstallmentNo INT NOT NULL, DueDate DATE NOT NULL, AmountDue DOUBLE NOT NULL, " +
+                    "AmountPaid DOUBLE NOT NULL DEFAULT 0, Settled BOOLEAN NOT NULL DEFAULT FALSE, " +
+                    "PRIMARY KEY (LoanID, InstallmentNo), INDEX idx_loan_schedule_overdue (Settled, DueDate))");
+            stmt.execute("CREATE TABLE IF NOT EXISTS member_share_totals (" +
+                    "MemberID INT NOT NULL PRIMARY KEY, TotalContributions DOUBLE NOT NULL DEFAULT 0, " +
+                    "ContributionCount INT NOT NULL DEFAULT 0, LastContributionDate DATE)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS revenue_monthly (" +
+                    "Period DATE NOT NULL, Slot TINYINT NOT NULL DEFAULT 0, LoanInterest DOUBLE NOT NULL DEFAULT 0, " +
+                    "DepositInterest DOUBLE NOT NULL DEFAULT 0, RegistrationFees DOUBLE NOT NULL DEFAULT 0, " +
+                    "Repayments DOUBLE NOT NULL DEFAULT 0, PRIMARY KEY (Period, Slot))");
+        }
+        System.out.println("Schema created.");
+    }
+
+    public void generate(Connection conn) throws SQLException {
+        long start = System.nanoTime();
+        conn.setAutoCommit(false);
+        try {
+            int[] memberIds = generateMembers(conn);
+            generateContributions(conn, memberIds);
+            generateLoans(conn, memberIds);
+            generateFixedDeposits(conn);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        System.out.printf(Locale.ROOT, "Done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private int[] generateMembers(Connection conn) throws SQLException {
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        int firstNew = maxId(conn, "SELECT MAX(MemberID) FROM members") + 1;
+        String query = "INSERT INTO members (FullName, Age, Shares, RegistrationFee, OutstandingLoan, ExitNoticeGiven, Dividends) " +
+                "VALUES (?, ?, ?, 1000, 0, ?, 0)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < members; i++) {
+                pstmt.setString(1, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                        + LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+                pstmt.setInt(2, 18 + random.nextInt(18));
+                pstmt.setDouble(3, 1000 + 50 * random.nextInt(800));
+                pstmt.setBoolean(4, random.nextInt(50) == 0);
+                pstmt.addBatch();
+                flushIfFull(conn, pstmt, i + 1);
+            }
+            flush(conn, pstmt);
+        }
+        int[] memberIds = idsFrom(conn, "SELECT MemberID FROM members WHERE MemberID >= ? ORDER BY MemberID", firstNew);
+        report("members", memberIds.length, start);
+        return memberIds;
+    }
+
+    private void generateContributions(Connection conn, int[] memberIds) throws SQLException {
+        if (memberIds.length == 0 || contributions == 0) {
+            return;
+        }
+        Random random = new Random(seed + 1);
+        long start = System.nanoTime();
+        boolean hasDate = DatabaseConnection.hasColumn(conn, "contributions", "ContributionDate");
+        String query = hasDate
+                ? "INSERT INTO contributions (MemberID, ContributionAmount, ContributionDate) VALUES (?, ?, ?)"
+                : "INSERT INTO contributions (MemberID, ContributionAmount) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (long i = 0; i < contributions; i++) {
+                pstmt.setInt(1, memberIds[random.nextInt(memberIds.length)]);
+                pstmt.setDouble(2, 100 + 50 * random.nextInt(100));
+                if (hasDate) {
+                    pstmt.setDate(3, Date.valueOf(today.minusDays(random.nextInt(3 * 365))));
+                }
+                pstmt.addBatch();
+                flushIfFull(conn, pstmt, i + 1);
+                if ((i + 1) % 100_000 == 0) {
+                    System.out.printf(Locale.ROOT, "  contributions: %d / %d%n", i + 1, contributions);
+                }
+            }
+            flush(conn, pstmt);
+        }
+        // The generated members are new, so their running totals can be inserted outright
+        if (DatabaseConnection.hasTable(conn, "member_share_totals")) {
+            String totals = hasDate
+                    ? "INSERT INTO member_share_totals (MemberID, TotalContributions, ContributionCount, LastContributionDate) " +
+                      "SELECT MemberID, SUM(ContributionAmount), COUNT(*), MAX(ContributionDate) FROM contributions WHERE MemberID >= ? GROUP BY MemberID"
+                    : "INSERT INTO member_share_totals (MemberID, TotalContributions, ContributionCount) " +
+                      "SELECT MemberID, SUM(ContributionAmount), COUNT(*) FROM contributions WHERE MemberID >= ? GROUP BY MemberID";
+            try (PreparedStatement pstmt = conn.prepareStatement(totals)) {
+                pstmt.setInt(1, memberIds[0]);
+                pstmt.executeUpdate();
+            }
+            conn.commit();
+        }
+        report("contributions", contributions, start);
+    }
+
+    private void generateLoans(Connection conn, int[] memberIds) throws SQLException {
+        if (memberIds.length == 0 || loans == 0) {
+            return;
+        }
+        Random random = new Random(seed + 2);
+        long start = System.nanoTime();
+        int firstNew = maxId(conn, "SELECT MAX(LoanID) FROM loans") + 1;
+        boolean hasGuarantorTable = DatabaseConnection.hasTable(conn, "loan_guarantors");
+        int[][] guarantorsByLoan = new int[loans][];
+
+        String query = "INSERT INTO loans (MemberID, LoanAmount, LoanType, InterestRate, RepaymentPeriod, MonthlyRepayment, " +
+                "OutstandingBalance, GuarantorIDs, LoanStatus) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int i = 0; i < loans; i++) {
+                int memberId = memberIds[random.nextInt(memberIds.length)];
+                double shares = 4000 + 50 * random.nextInt(600);
+                // Any type the shares qualify for, as the loan form allows
+                int topType = LoanRules.current().eligibleType(shares);
+                String loanType = LoanRules.TYPES[random.nextInt(topType + 1)];
+                double loanAmount = Math.round(LoanManagement.maxLoanAmount(shares, loanType) * (0.2 + 0.8 * random.nextDouble()));
+                double rateFactor = LoanManagement.interestRateFactor(loanType);
+                int period = LoanManagement.repaymentPeriod(loanType);
+                boolean cleared = random.nextInt(4) == 0;
+                double outstanding = cleared ? 0 : Math.round(loanAmount * random.nextDouble());
+
+                // Distinct guarantors other than the borrower, as GuarantorIndex requires
+                int[] guarantors = new int[Math.min(1 + random.nextInt(3), memberIds.length - 1)];
+                StringBuilder guarantorIds = new StringBuilder();
+                for (int g = 0; g < guarantors.length; g++) {
+                    int guarantorId;
+                    do {
+                        guarantorId = memberIds[random.nextInt(memberIds.length)];
+                    } while (guarantorId == memberId || indexOf(guarantors, guarantorId, g) >= 0);
+                    guarantors[g] = guarantorId;
+                    guarantorIds.append(g == 0 ? "" : ",").append(guarantorId);
+                }
+                guarantorsByLoan[i] = guarantors;
+
+                pstmt.setInt(1, memberId);
+                pstmt.setDouble(2, loanAmount);
+                pstmt.setString(3, loanType);
+                pstmt.setDouble(4, rateFactor * 100);
+                pstmt.setInt(5, period);
+                pstmt.setDouble(6, loanAmount * (1 + rateFactor) / period);
+                pstmt.setDouble(7, outstanding);
+                pstmt.setString(8, guarantorIds.toString());
+                pstmt.setString(9, cleared ? "Cleared" : "Active");
+                pstmt.addBatch();
+                flushIfFull(conn, pstmt, i + 1);
+            }
+            flush(conn, pstmt);
+        }
+        report("loans", loans, start);
+
+        if (!hasGuarantorTable) {
+            return;
+        }
+        start = System.nanoTime();
+        int[] loanIds = idsFrom(conn, "SELECT LoanID FROM loans WHERE LoanID >= ? ORDER BY LoanID", firstNew);
+        long rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO loan_guarantors (LoanID, GuarantorID) VALUES (?, ?)")) {
+            for (int i = 0; i < loanIds.length && i < guarantorsByLoan.length; i++) {
+                int[] guarantors = guarantorsByLoan[i];
+                for (int guarantorId : guarantors) {
+                    pstmt.setInt(1, loanIds[i]);
+                    pstmt.setInt(2, guarantorId);
+                    pstmt.addBatch();
+                    flushIfFull(conn, pstmt, ++rows);
+                }
+            }
+            flush(conn, pstmt);
+        }
+        report("loan_guarantors", rows, start);
+    }
+
+    // One snapshot per month, oldest first, as FixedDepositManagement writes them
+    private void generateFixedDeposits(Connection conn) throws SQLException {
+        Random random = new Random(seed + 3);
+        long start = System.nanoTime();
+        String query = "INSERT INTO fixed_deposits (TotalSavings, MonthlyInterest, AccumulatedInterest, LastUpdated) VALUES (?, ?, ?, ?)";
+        double totalSavings = members * 5000.0;
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            for (int month = depositMonths; month > 0; month--) {
+                totalSavings *= 1 + 0.02 * random.nextDouble();
+                double monthlyInterest = totalSavings * 0.006;
+                pstmt.setDouble(1, Math.round(totalSavings));
+                pstmt.setDouble(2, monthlyInterest);
+                pstmt.setDouble(3, monthlyInterest);
+                pstmt.setDate(4, Date.valueOf(today.minusMonths(month - 1)));
+                pstmt.addBatch();
+            }
+            flush(conn, pstmt);
+        }
+        report("fixed_deposits", depositMonths, start);
+    }
+
+    private void flushIfFull(Connection conn, PreparedStatement pstmt, long added) throws SQLException {
+        if (added % batchSize == 0) {
+            flush(conn, pstmt);
+        }
+    }
+
+    private static void flush(Connection conn, PreparedStatement pstmt) throws SQLException {
+        pstmt.executeBatch();
+        conn.commit();
+    }
+
+    private static void report(String table, long rows, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf(Locale.ROOT, "%-16s %,12d rows in %6.1f s (%,.0f rows/s)%n", table, rows, seconds,
+                seconds > 0 ? rows / seconds : 0);
+    }
+
+    private static int maxId(Connection conn, String query) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static int[] idsFrom(Connection conn, String query, int firstId) throws SQLException {
+        int[] ids = new int[1024];
+        int count = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
+            pstmt.setInt(1, firstId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (count == ids.length) {
+                        ids = Arrays.copyOf(ids, count * 2);
+                    }
+                    ids[count++] = rs.getInt(1);
+                }
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    // Index of value among the first count entries, or -1
+    private static int indexOf(int[] values, int value, int count) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
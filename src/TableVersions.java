@@ -0,0 +1,51 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process change counters, one per table. Every code path that writes a table
+// bumps its counter once the write has committed; caches remember the counters
+// they were built at and treat any difference as stale. Writes made by other
+// processes are not seen here, so caches still need a TTL.
+public final class TableVersions {
+    public static final String MEMBERS = "members";
+    public static final String LOANS = "loans";
+    public static final String LOAN_GUARANTORS = "loan_guarantors";
+    public static final String CONTRIBUTIONS = "contributions";
+    public static final String FIXED_DEPOSITS = "fixed_deposits";
+    public static final String MEMBER_INTEREST_ACCRUALS = "member_interest_accruals";
+    public static final String MEMBER_SHARE_TOTALS = "member_share_totals";
+    public static final String LOAN_SCHEDULE = "loan_schedule";
+    public static final String REVENUE_MONTHLY = "revenue_monthly";
+
+    private static final ConcurrentHashMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+    private TableVersions() {
+    }
+
+    public static void bump(String... tables) {
+        for (String table : tables) {
+            VERSIONS.computeIfAbsent(table, t -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public static long get(String table) {
+        AtomicLong version = VERSIONS.get(table);
+        return version == null ? 0 : version.get();
+    }
+
+    public static long[] snapshot(String[] tables) {
+        long[] versions = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            versions[i] = get(tables[i]);
+        }
+        return versions;
+    }
+
+    public static boolean isCurrent(String[] tables, long[] versions) {
+        for (int i = 0; i < tables.length; i++) {
+            if (get(tables[i]) != versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
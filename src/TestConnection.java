@@ -10,6 +10,12 @@ public class TestConnection{
         // Check if the connection is successful
         if (conn != null) {
             System.out.println("Connection successful!");
+            System.out.println("Pool: " + DatabaseConnection.getPoolStats());
+            try {
+                conn.close();
+            } catch (java.sql.SQLException e) {
+                e.printStackTrace();
+            }
         } else {
             System.out.println("Failed to connect to the database.");
         }
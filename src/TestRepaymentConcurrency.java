@@ -0,0 +1,198 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Concurrency stress test for loan repayments. Creates a few throw-away loans, has
+// many threads post single repayments against them while a statement import posts
+// to the same loans, then checks that no update was lost and prints throughput.
+// The test loans are removed again however the run ends, with their installment
+// rows and the repayments they added to revenue_monthly (taken from each loan's
+// balance, so it is right even when the run fails part way).
+//
+// It writes to whatever FEDHA_DB_URL points at, so it refuses to run unless
+// FEDHA_DB_URL is set explicitly and FEDHA_ALLOW_TEST_WRITES=true; point it at a
+// test database, never the live one.
+// Usage: TestRepaymentConcurrency [threads] [repaymentsPerThread] [statementLines]
+public class TestRepaymentConcurrency {
+    private static final int LOANS = 4;
+    private static final double AMOUNT = 10.0;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getenv("FEDHA_DB_URL") == null || !"true".equals(System.getenv("FEDHA_ALLOW_TEST_WRITES"))) {
+            System.err.println("TestRepaymentConcurrency writes test loans and repayments to the configured database.");
+            System.err.println("Set FEDHA_DB_URL to a test database and FEDHA_ALLOW_TEST_WRITES=true to run it.");
+            System.exit(2);
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int statementLines = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        // Leave some balance so the loans are still Active at the end
+        double initialBalance = (threads * perThread + statementLines) * AMOUNT + 1000;
+
+        int[] loanIds = new int[LOANS];
+        int created = 0;
+        File statement = null;
+        boolean passed;
+        try {
+            for (; created < LOANS; created++) {
+                loanIds[created] = createTestLoan(initialBalance);
+            }
+            statement = writeStatement(loanIds, statementLines);
+            System.out.println("Created " + LOANS + " test loans with balance " + initialBalance + " each");
+            passed = run(loanIds, statement, threads, perThread, initialBalance);
+        } finally {
+            for (int i = 0; i < created; i++) {
+                try {
+                    deleteTestLoan(loanIds[i], initialBalance);
+                } catch (SQLException e) {
+                    System.err.println("Could not delete test loan " + loanIds[i] + ": " + e.getMessage());
+                }
+            }
+            if (statement != null) {
+                statement.delete();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    // Posts the repayments and checks the balances; the caller removes the loans
+    private static boolean run(int[] loanIds, File statement, int threads, int perThread, double initialBalance)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger posted = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        long conflictsBefore = LoanRepayments.getConflictCount();
+
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        if (LoanRepayments.repay(loanIds[(offset + i) % LOANS], AMOUNT)) {
+                            posted.incrementAndGet();
+                        } else {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                    e.printStackTrace();
+                }
+            });
+        }
+        Future<RepaymentImporter.Result> imported = pool.submit(() -> {
+            start.await();
+            return new RepaymentImporter().importFile(statement, JobControl.NONE);
+        });
+
+        long begin = System.nanoTime();
+        start.countDown();
+        RepaymentImporter.Result importResult = imported.get();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        if (importResult.failure != null) {
+            throw importResult.failure;
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        double expected = LOANS * initialBalance - posted.get() * AMOUNT - importResult.amountPosted;
+        double actual = 0;
+        for (int loanId : loanIds) {
+            actual += readBalance(loanId);
+        }
+
+        int totalPosted = posted.get() + importResult.linesPosted;
+        System.out.printf("Threads: %d, single repayments posted: %d, failures: %d%n", threads, posted.get(), failures.get());
+        System.out.printf("Statement lines posted: %d of %d, rejected: %d%n",
+                importResult.linesPosted, importResult.linesRead, importResult.rejects.size());
+        System.out.printf("Version conflicts retried by the importer: %d%n", LoanRepayments.getConflictCount() - conflictsBefore);
+        System.out.printf("Elapsed: %.2f s, throughput: %.0f repayments/s%n", seconds, totalPosted / seconds);
+        System.out.printf("Expected total balance %.2f, actual %.2f%n", expected, actual);
+        if (Math.abs(expected - actual) > 0.001 || failures.get() > 0) {
+            System.out.println("FAILED: repayments were lost or rejected.");
+            return false;
+        }
+        System.out.println("PASSED: no lost updates.");
+        return true;
+    }
+
+    private static File writeStatement(int[] loanIds, int lines) throws IOException {
+        File file = File.createTempFile("repayments", ".csv");
+        try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("LoanID,Amount");
+            for (int i = 0; i < lines; i++) {
+                writer.println(loanIds[i % loanIds.length] + "," + AMOUNT);
+            }
+        }
+        return file;
+    }
+
+    private static int createTestLoan(double balance) throws SQLException {
+        String query = "INSERT INTO loans (MemberID, LoanAmount, LoanType, InterestRate, RepaymentPeriod, MonthlyRepayment, LoanStatus, GuarantorIDs, OutstandingBalance) " +
+                "VALUES (0, ?, 'Emergency', 30, 12, 0, 'Active', '', ?)";
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setDouble(1, balance);
+            pstmt.setDouble(2, balance);
+            pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                keys.next();
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    private static double readBalance(int loanId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return readBalance(conn, loanId);
+        }
+    }
+
+    private static double readBalance(Connection conn, int loanId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT OutstandingBalance FROM loans WHERE LoanID = ?")) {
+            pstmt.setInt(1, loanId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                return rs.getDouble(1);
+            }
+        }
+    }
+
+    // Deletes the loan and its schedule and takes what was repaid on it back out of
+    // this month's revenue, in one transaction
+    private static void deleteTestLoan(int loanId, double initialBalance) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmtSchedule = conn.prepareStatement("DELETE FROM loan_schedule WHERE LoanID = ?");
+                 PreparedStatement pstmtLoan = conn.prepareStatement("DELETE FROM loans WHERE LoanID = ?")) {
+                double repaid = initialBalance - readBalance(conn, loanId);
+                pstmtSchedule.setInt(1, loanId);
+                pstmtSchedule.executeUpdate();
+                pstmtLoan.setInt(1, loanId);
+                pstmtLoan.executeUpdate();
+                RevenueLedger.record(conn, LocalDate.now(), RevenueLedger.REPAYMENTS, -repaid);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        TableVersions.bump(TableVersions.LOANS, TableVersions.LOAN_SCHEDULE, TableVersions.REVENUE_MONTHLY);
+    }
+}